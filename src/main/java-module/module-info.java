@@ -6,12 +6,18 @@ module com.keenotes.mobile {
     requires java.sql;
     requires java.desktop;
 
+    // JFR 事件：同步各阶段耗时
+    requires jdk.jfr;
+
     // OkHttp WebSocket客户端 + HTTP请求
     requires okhttp3;
 
     // Vert.x用于JSON处理
     requires io.vertx.core;
 
+    // Jackson 流式解析 sync_batch
+    requires com.fasterxml.jackson.core;
+
     // Bouncy Castle用于Argon2+HKDF
     requires org.bouncycastle.provider;
 
@@ -0,0 +1,80 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spacing between sequential import requests, adjusted from the server's responses (AIMD):
+ * fast successes shrink the gap multiplicatively down to zero, slow responses grow it a little,
+ * and 429 / 5xx / network failures back off by doubling. Replaces the old fixed 100ms sleep.
+ * Single-threaded use (the import sender).
+ */
+final class AdaptiveRateLimiter {
+
+    private static final long POLL_MS = 100;
+
+    private final long targetLatencyMs;
+    private final long maxDelayMs;
+    private final long backoffFloorMs;
+
+    private long delayMs;
+    private long nextAllowedNanos = System.nanoTime();
+    private long throttledCount;
+
+    AdaptiveRateLimiter(long targetLatencyMs, long backoffFloorMs, long maxDelayMs) {
+        this.targetLatencyMs = targetLatencyMs;
+        this.backoffFloorMs = backoffFloorMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Wait until the next request may go out.
+     *
+     * @return false if {@code cancelled} turned true while waiting
+     */
+    boolean acquire(BooleanSupplier cancelled) throws InterruptedException {
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(nextAllowedNanos - System.nanoTime());
+            if (waitMs <= 0) {
+                return true;
+            }
+            Thread.sleep(Math.min(waitMs, POLL_MS));
+        }
+    }
+
+    /**
+     * Accepted response ({@code latencyMs} = request round trip).
+     */
+    void onSuccess(long latencyMs) {
+        if (latencyMs > targetLatencyMs) {
+            delayMs = Math.min(maxDelayMs, delayMs + Math.max(10, delayMs / 4));
+        } else {
+            delayMs = delayMs * 3 / 4;
+        }
+        schedule();
+    }
+
+    /**
+     * 429, 5xx or no response at all: the server (or the path to it) is overloaded.
+     */
+    void onThrottled() {
+        throttledCount++;
+        delayMs = Math.min(maxDelayMs, Math.max(backoffFloorMs, delayMs * 2));
+        schedule();
+    }
+
+    long currentDelayMs() {
+        return delayMs;
+    }
+
+    long throttledCount() {
+        return throttledCount;
+    }
+
+    private void schedule() {
+        nextAllowedNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+    }
+}
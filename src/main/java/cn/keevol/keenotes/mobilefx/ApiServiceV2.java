@@ -8,6 +8,7 @@ import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -76,17 +77,20 @@ public class ApiServiceV2 {
         private final String echoContent;
         private final Long noteId;
         private final boolean networkError;
+        private final int httpStatus;
 
         public ApiResult(boolean success, String message, String echoContent, Long noteId) {
-            this(success, message, echoContent, noteId, false);
+            this(success, message, echoContent, noteId, false, 0);
         }
 
-        private ApiResult(boolean success, String message, String echoContent, Long noteId, boolean networkError) {
+        private ApiResult(boolean success, String message, String echoContent, Long noteId, boolean networkError,
+                          int httpStatus) {
             this.success = success;
             this.message = message;
             this.echoContent = echoContent;
             this.noteId = noteId;
             this.networkError = networkError;
+            this.httpStatus = httpStatus;
         }
 
         public boolean success() { return success; }
@@ -94,6 +98,15 @@ public class ApiServiceV2 {
         public String echoContent() { return echoContent; }
         public Long noteId() { return noteId; }
         public boolean networkError() { return networkError; }
+        /** HTTP status of the response, 0 if the request never got one (validation or network failure) */
+        public int httpStatus() { return httpStatus; }
+        /**
+         * No response, or 408 / 429 / 5xx: the same request may well succeed later, so it should be retried
+         * rather than recorded as rejected. Other failures (4xx, validation) are final for this note.
+         */
+        public boolean retryable() {
+            return !success && (networkError || httpStatus == 408 || httpStatus == 429 || httpStatus >= 500);
+        }
 
         public static ApiResult success(String echoContent, Long noteId) {
             return new ApiResult(true, "Note saved successfully!", echoContent, noteId);
@@ -102,7 +115,13 @@ public class ApiServiceV2 {
             return new ApiResult(false, message, null, null);
         }
         public static ApiResult networkFailure(String message) {
-            return new ApiResult(false, message, null, null, true);
+            return new ApiResult(false, message, null, null, true, 0);
+        }
+        static ApiResult success(String echoContent, Long noteId, int httpStatus) {
+            return new ApiResult(true, "Note saved successfully!", echoContent, noteId, false, httpStatus);
+        }
+        static ApiResult serverFailure(int httpStatus) {
+            return new ApiResult(false, "Server error: " + httpStatus, null, null, false, httpStatus);
         }
     }
 
@@ -128,6 +147,13 @@ public class ApiServiceV2 {
     }
 
     public CompletableFuture<PreparedNote> prepareNote(String content, String channel, String utcTs) {
+        return prepareNote(content, channel, utcTs, networkExecutor);
+    }
+
+    /**
+     * Encrypt on {@code executor} instead of the shared network pool (bulk imports encrypt ahead in parallel).
+     */
+    public CompletableFuture<PreparedNote> prepareNote(String content, String channel, String utcTs, Executor executor) {
         if (content == null || content.isBlank()) {
             return CompletableFuture.failedFuture(new IllegalArgumentException("Note content cannot be empty."));
         }
@@ -145,7 +171,7 @@ public class ApiServiceV2 {
             } catch (Exception e) {
                 throw new CompletionException(e);
             }
-        }, networkExecutor);
+        }, executor);
     }
 
     public CompletableFuture<ApiResult> postPreparedNote(PreparedNote note) {
@@ -185,9 +211,9 @@ public class ApiServiceV2 {
                 try (Response response = httpClient.newCall(request).execute()) {
                     if (response.isSuccessful()) {
                         String body = response.body() != null ? response.body().string() : "";
-                        return ApiResult.success(note.content(), parseNoteId(body));
+                        return ApiResult.success(note.content(), parseNoteId(body), response.code());
                     } else {
-                        return ApiResult.failure("Server error: " + response.code());
+                        return ApiResult.serverFailure(response.code());
                     }
                 }
             } catch (Exception e) {
@@ -242,9 +268,9 @@ public class ApiServiceV2 {
                 try (Response response = httpClient.newCall(request).execute()) {
                     if (response.isSuccessful()) {
                         String body = response.body() != null ? response.body().string() : "";
-                        return ApiResult.success(originalContent, parseNoteId(body));
+                        return ApiResult.success(originalContent, parseNoteId(body), response.code());
                     } else {
-                        return ApiResult.failure("Server error: " + response.code());
+                        return ApiResult.serverFailure(response.code());
                     }
                 }
             } catch (Exception e) {
@@ -382,9 +408,9 @@ public class ApiServiceV2 {
                 try (Response response = httpClient.newCall(request).execute()) {
                     if (response.isSuccessful()) {
                         String body = response.body() != null ? response.body().string() : "";
-                        return ApiResult.success(encryptedContent, parseNoteId(body));
+                        return ApiResult.success(encryptedContent, parseNoteId(body), response.code());
                     } else {
-                        return ApiResult.failure("Server error: " + response.code());
+                        return ApiResult.serverFailure(response.code());
                     }
                 }
             } catch (Exception e) {
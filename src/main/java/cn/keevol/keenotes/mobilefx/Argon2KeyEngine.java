@@ -0,0 +1,284 @@
+package cn.keevol.keenotes.mobilefx;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.crypto.params.HKDFParameters;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide Argon2id + HKDF key derivation shared by every {@link CryptoService} instance.
+ * <ul>
+ *   <li>memory budget — each derivation needs a 64MB working set, so a semaphore caps how many run at
+ *       once ({@code -Dkeenotes.argon2.memoryBudgetMB}, default 25% of max heap);</li>
+ *   <li>striped key cache — salt → derived key, split into independently locked LRU stripes so
+ *       decrypt threads hitting different salts don't contend on one lock;</li>
+ *   <li>single-flight — concurrent requests for the same salt wait for one derivation instead of
+ *       each running Argon2.</li>
+ * </ul>
+ * Cached keys belong to one password; a different password clears the cache.
+ * With the persistent key cache setting on, misses are looked up in {@link PersistentKeyCache} before running Argon2.
+ */
+final class Argon2KeyEngine {
+
+    private static final Logger logger = AppLogger.getLogger(Argon2KeyEngine.class);
+
+    static final int ARGON2_ITERATIONS = 3;
+    static final int ARGON2_MEMORY_KB = 65536; // 64MB
+    static final int ARGON2_PARALLELISM = 1;
+    private static final int KEY_LENGTH = 32;
+
+    private static final long WORKING_SET_BYTES = ARGON2_MEMORY_KB * 1024L;
+    private static final int DEFAULT_BUDGET_PERCENT = 25;
+    private static final String BUDGET_PROPERTY = "keenotes.argon2.memoryBudgetMB";
+
+    private static final int STRIPES = 16;
+    private static final int ENTRIES_PER_STRIPE = 16; // 总计 256 个派生密钥
+
+    private static final Argon2KeyEngine INSTANCE = new Argon2KeyEngine();
+
+    private final Semaphore memoryPermits;
+    private final int maxConcurrentDerivations;
+    private final List<Map<String, SecretKey>> stripes = new ArrayList<>(STRIPES);
+    private final ConcurrentHashMap<String, CompletableFuture<SecretKey>> inFlight = new ConcurrentHashMap<>();
+    // wait = 等内存预算许可，hold = Argon2 计算本身
+    private final TimedLock.Stats derivationStats = new TimedLock.Stats("argon2");
+
+    private final Object passwordLock = new Object();
+    private volatile PasswordState passwordState = new PasswordState(null, -1L, 0L);
+    private PersistentKeyCache persistentCache;
+
+    private Argon2KeyEngine() {
+        this.maxConcurrentDerivations = computeMaxConcurrentDerivations();
+        this.memoryPermits = new Semaphore(maxConcurrentDerivations, true);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new LinkedHashMap<>(ENTRIES_PER_STRIPE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+                    return size() > ENTRIES_PER_STRIPE;
+                }
+            });
+        }
+        logger.info("Argon2 engine: maxConcurrentDerivations=" + maxConcurrentDerivations);
+    }
+
+    static Argon2KeyEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * budget / 64MB, at least 1
+     */
+    private static int computeMaxConcurrentDerivations() {
+        long budgetBytes = Runtime.getRuntime().maxMemory() / 100 * DEFAULT_BUDGET_PERCENT;
+        String configured = System.getProperty(BUDGET_PROPERTY);
+        if (configured != null) {
+            try {
+                budgetBytes = Long.parseLong(configured.trim()) * 1024L * 1024L;
+            } catch (NumberFormatException e) {
+                logger.warning("Ignoring invalid " + BUDGET_PROPERTY + ": " + configured);
+            }
+        }
+        return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, budgetBytes / WORKING_SET_BYTES));
+    }
+
+    /**
+     * Argon2 runs (key cache misses): memory-budget wait and compute time.
+     */
+    String derivationSummary() {
+        return derivationStats.summary();
+    }
+
+    int maxConcurrentDerivations() {
+        return maxConcurrentDerivations;
+    }
+
+    /**
+     * Which password the cache currently belongs to. Replaced as a whole so that version and
+     * generation are always read together.
+     */
+    private static final class PasswordState {
+        final String password;
+        final long vaultVersion;
+        final long generation;
+
+        PasswordState(String password, long vaultVersion, long generation) {
+            this.password = password;
+            this.vaultVersion = vaultVersion;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Argon2id(password, salt) → HKDF-SHA256(salt, hkdfInfo), cached per {@code cachePrefix + salt}.
+     */
+    SecretKey derive(SecretVault.Secret secret, byte[] salt, byte[] hkdfInfo, String cachePrefix) {
+        String password = secret.value;
+        long gen = generationFor(secret);
+        String cacheKey = cachePrefix + Base64.getEncoder().encodeToString(salt);
+
+        SecretKey cached = cacheGet(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // single-flight：同一 generation 下同一个盐只派生一次，其余调用等待同一个结果
+        String flightKey = gen + ":" + cacheKey;
+        CompletableFuture<SecretKey> mine = new CompletableFuture<>();
+        CompletableFuture<SecretKey> existing = inFlight.putIfAbsent(flightKey, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        try {
+            PersistentKeyCache diskCache = persistentCache();
+            SecretKey key = diskCache != null ? diskCache.get(gen, password, cacheKey) : null;
+            if (key == null) {
+                key = deriveUncached(password, salt, hkdfInfo);
+                if (diskCache != null && gen == passwordState.generation) {
+                    diskCache.put(gen, password, cacheKey, key);
+                }
+            }
+            cachePut(gen, cacheKey, key);
+            mine.complete(key);
+            return key;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    /**
+     * On-disk key cache next to keenotes_cache.db, or null when the setting is off.
+     * Created lazily on the first in-memory miss; switching the setting off at runtime deletes the file.
+     */
+    private PersistentKeyCache persistentCache() {
+        boolean enabled = SettingsService.getInstance().isPersistentKeyCacheEnabled();
+        synchronized (passwordLock) {
+            if (!enabled) {
+                if (persistentCache != null) {
+                    persistentCache.clear();
+                    persistentCache = null;
+                }
+                return null;
+            }
+            if (persistentCache == null) {
+                Path dbPath = Path.of(LocalCacheService.getInstance().getDbPath());
+                persistentCache = new PersistentKeyCache(dbPath.resolveSibling(PersistentKeyCache.FILE_NAME),
+                        this::deriveUncached);
+            }
+            return persistentCache;
+        }
+    }
+
+    /**
+     * Current cache generation for {@code secret}; a new password clears every stripe.
+     * The common case is one volatile read and a long comparison against the vault version stamp;
+     * the password itself is compared only when the vault reloaded it.
+     */
+    private long generationFor(SecretVault.Secret secret) {
+        PasswordState state = passwordState;
+        if (state.vaultVersion == secret.version) {
+            return state.generation;
+        }
+        synchronized (passwordLock) {
+            state = passwordState;
+            if (secret.value.equals(state.password)) {
+                passwordState = new PasswordState(state.password, secret.version, state.generation);
+                return state.generation;
+            }
+            long next = state.generation + 1;
+            // 先发布新代次再清空：旧代次的派生结果在 cachePut 里被拒绝，或被随后的 clear 清掉
+            passwordState = new PasswordState(secret.value, secret.version, next);
+            for (Map<String, SecretKey> stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
+            return next;
+        }
+    }
+
+    private Map<String, SecretKey> stripeFor(String cacheKey) {
+        return stripes.get((cacheKey.hashCode() & 0x7fffffff) % STRIPES);
+    }
+
+    private SecretKey cacheGet(String cacheKey) {
+        Map<String, SecretKey> stripe = stripeFor(cacheKey);
+        synchronized (stripe) {
+            return stripe.get(cacheKey);
+        }
+    }
+
+    private void cachePut(long gen, String cacheKey, SecretKey key) {
+        Map<String, SecretKey> stripe = stripeFor(cacheKey);
+        synchronized (stripe) {
+            if (gen == passwordState.generation) {
+                stripe.put(cacheKey, key);
+            }
+        }
+    }
+
+    private SecretKey deriveUncached(String password, byte[] salt, byte[] hkdfInfo) {
+        byte[] argon2Output = new byte[KEY_LENGTH];
+        SyncJfrEvents.KeyDerivationEvent event = new SyncJfrEvents.KeyDerivationEvent();
+        event.begin();
+        long requested = System.nanoTime();
+        // BouncyCastle 每次 init 都会重新分配 64MB 工作内存，无法复用；用许可数把同时存活的工作集限制在预算内
+        memoryPermits.acquireUninterruptibly();
+        long acquired = System.nanoTime();
+        try {
+            Argon2Parameters params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                    .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                    .withIterations(ARGON2_ITERATIONS)
+                    .withMemoryAsKB(ARGON2_MEMORY_KB)
+                    .withParallelism(ARGON2_PARALLELISM)
+                    .withSalt(salt)
+                    .build();
+            Argon2BytesGenerator argon2 = new Argon2BytesGenerator();
+            argon2.init(params);
+            argon2.generateBytes(password.toCharArray(), argon2Output);
+        } finally {
+            memoryPermits.release();
+            derivationStats.record(acquired - requested, System.nanoTime() - acquired);
+        }
+
+        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        hkdf.init(new HKDFParameters(argon2Output, salt, hkdfInfo));
+        byte[] derivedKey = new byte[KEY_LENGTH];
+        hkdf.generateBytes(derivedKey, 0, KEY_LENGTH);
+        event.permitWaitNanos = acquired - requested;
+        event.commit();
+        return new SecretKeySpec(derivedKey, "AES");
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException("Key derivation failed", t);
+    }
+}
@@ -0,0 +1,114 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Bounded hand-off between the WebSocket reader and the decrypt/DB pipeline.
+ * At most {@code maxInFlight} sync batches may be received but not yet written. When the bound is hit
+ * the reader thread blocks in {@link #acquire}; OkHttp then stops reading the socket, so TCP flow control
+ * slows the server down. {@code onPause} / {@code onResume} additionally let the caller send an explicit
+ * flow_control message. Resume fires once the depth drains back to the low watermark.
+ */
+final class BatchFlowControl {
+
+    private static final Logger logger = AppLogger.getLogger(BatchFlowControl.class);
+
+    private static final long ACQUIRE_POLL_MS = 500;
+
+    private final int maxInFlight;
+    private final int resumeAtDepth;
+    private final Semaphore slots;
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong pauseCount = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicBoolean paused = new AtomicBoolean(false);
+
+    BatchFlowControl(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.resumeAtDepth = Math.max(0, maxInFlight / 2);
+        this.slots = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * One acquired in-flight slot; {@link #release()} is idempotent so every completion path may call it.
+     */
+    final class Slot {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private final Runnable onResume;
+
+        private Slot(Runnable onResume) {
+            this.onResume = onResume;
+        }
+
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            int remaining = depth.decrementAndGet();
+            slots.release();
+            if (remaining <= resumeAtDepth && paused.compareAndSet(true, false)) {
+                onResume.run();
+            }
+        }
+    }
+
+    /**
+     * Take a slot, blocking the calling (reader) thread while {@code maxInFlight} batches are pending.
+     *
+     * @param cancelled polled while blocked; when it turns true the wait is abandoned
+     * @return the slot, or null if cancelled
+     */
+    Slot acquire(Runnable onPause, Runnable onResume, BooleanSupplier cancelled) {
+        if (!slots.tryAcquire()) {
+            if (paused.compareAndSet(false, true)) {
+                pauseCount.incrementAndGet();
+                onPause.run();
+            }
+            long start = System.nanoTime();
+            try {
+                while (!slots.tryAcquire(ACQUIRE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        int current = depth.incrementAndGet();
+        maxDepth.accumulateAndGet(current, Math::max);
+        return new Slot(onResume);
+    }
+
+    /**
+     * Batches received but not yet written (queue depth).
+     */
+    int depth() {
+        return depth.get();
+    }
+
+    String summary() {
+        return String.format("syncQueue: depth=%d maxDepth=%d limit=%d pauses=%d blockedMs=%d",
+                depth.get(), maxDepth.get(), maxInFlight, pauseCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+    }
+
+    /**
+     * Reader stopped waiting (connection dropped); clear the paused flag without signalling resume.
+     */
+    void reset() {
+        if (paused.getAndSet(false)) {
+            logger.fine("Flow control reset while paused");
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package cn.keevol.keenotes.mobilefx;
 
-import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
 import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
-import org.bouncycastle.crypto.params.Argon2Parameters;
 import org.bouncycastle.crypto.params.HKDFParameters;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 
@@ -14,8 +12,6 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Base64;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * 增强的加密服务 - 使用Argon2 + HKDF派生加密密钥
@@ -29,6 +25,12 @@ import java.util.Map;
  * - Argon2id: 64MB内存, 3次迭代, 并行度1
  * - HKDF: SHA-256
  * - AES-256-GCM: 128位认证标签, 12字节IV
+ *
+ * 密文格式：
+ * - 0x02: 每条笔记随机盐，每次加解密都要跑一次 Argon2（数百毫秒）
+ * - 0x03: 账户主密钥 = Argon2(密码, 主盐) 只算一次并缓存；
+ *         每条笔记的密钥 = HKDF(主密钥, 随机 nonce)，单条加解密降到微秒级
+ * 解密同时支持 0x02 和 0x03；加密默认仍写 0x02，开启 v3 设置后写 0x03。
  */
 public class CryptoService {
 
@@ -38,26 +40,24 @@ public class CryptoService {
     private static final int SALT_LENGTH = 16; // bytes
     private static final int KEY_LENGTH = 32; // bytes (256 bits)
     private static final int TIMESTAMP_LENGTH = 8; // bytes (long)
+    private static final int NONCE_LENGTH = 16; // bytes (v3 per-note HKDF salt)
 
-    // Argon2参数
-    private static final int ARGON2_ITERATIONS = 3;
-    private static final int ARGON2_MEMORY_KB = 65536; // 64MB
-    private static final int ARGON2_PARALLELISM = 1;
+    private static final byte VERSION_V2 = 0x02; // Argon2+HKDF, per-note salt
+    private static final byte VERSION_V3 = 0x03; // Argon2 master key + HKDF per-note key
+    private static final int V3_HEADER_LENGTH = 1 + SALT_LENGTH + NONCE_LENGTH + GCM_IV_LENGTH + TIMESTAMP_LENGTH;
 
     // HKDF info参数（用于派生特定用途的密钥）
     private static final byte[] HKDF_INFO = "KeeNotes-E2E-Encryption-v2".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HKDF_INFO_MASTER_V3 = "KeeNotes-E2E-Master-v3".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HKDF_INFO_NOTE_V3 = "KeeNotes-E2E-Note-v3".getBytes(StandardCharsets.UTF_8);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     private final SettingsService settings;
 
-    // LRU cache: salt(Base64) → derived SecretKey, avoids repeated Argon2 (64MB alloc per call)
-    private static final int KEY_CACHE_SIZE = 256;
-    private final Map<String, SecretKey> keyCache = new LinkedHashMap<>(KEY_CACHE_SIZE, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
-            return size() > KEY_CACHE_SIZE;
-        }
-    };
-    private String cachedPassword; // track password to invalidate cache on change
+    // salt → derived key cache shared by all instances (bounded Argon2 memory, single-flight per salt)
+    private final Argon2KeyEngine keyEngine = Argon2KeyEngine.getInstance();
+    private final Object masterSaltLock = new Object();
 
     public CryptoService() {
         this.settings = SettingsService.getInstance();
@@ -67,27 +67,29 @@ public class CryptoService {
      * 检查加密是否已启用
      */
     public boolean isEncryptionEnabled() {
-        String password = settings.getEncryptionPassword();
-        return password != null && !password.isEmpty();
+        return !settings.getEncryptionPasswordSecret().isEmpty();
     }
 
     /**
      * 使用Argon2+HKDF+AES-GCM加密
      * Format: Base64(version + salt + iv + timestamp + ciphertext + tag)
-     * version: 1字节，标识加密方案版本（0x02表示Argon2+HKDF）
+     * version: 1字节，标识加密方案版本（0x02表示Argon2+HKDF，0x03表示主密钥+HKDF，见 {@link #encryptV3}）
      */
     public String encrypt(String plaintext) throws Exception {
-        String password = settings.getEncryptionPassword();
-        if (password == null || password.isEmpty()) {
+        SecretVault.Secret password = settings.getEncryptionPasswordSecret();
+        if (password.isEmpty()) {
             throw new IllegalStateException("Encryption password not set");
         }
 
+        if (settings.isEncryptionFormatV3Enabled()) {
+            return encryptV3(plaintext, password);
+        }
+
         // 生成随机盐和IV
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[SALT_LENGTH];
         byte[] iv = new byte[GCM_IV_LENGTH];
-        random.nextBytes(salt);
-        random.nextBytes(iv);
+        RANDOM.nextBytes(salt);
+        RANDOM.nextBytes(iv);
 
         // 获取当前时间戳作为AAD
         long timestamp = System.currentTimeMillis();
@@ -106,7 +108,7 @@ public class CryptoService {
         // 组合：version(1) + salt(16) + iv(12) + timestamp(8) + ciphertext
         byte[] combined = new byte[1 + salt.length + iv.length + TIMESTAMP_LENGTH + ciphertext.length];
         int pos = 0;
-        combined[pos++] = 0x02; // 版本标识：Argon2+HKDF
+        combined[pos++] = VERSION_V2; // 版本标识：Argon2+HKDF
         System.arraycopy(salt, 0, combined, pos, salt.length);
         pos += salt.length;
         System.arraycopy(iv, 0, combined, pos, iv.length);
@@ -118,13 +120,67 @@ public class CryptoService {
         return Base64.getEncoder().encodeToString(combined);
     }
 
+    /**
+     * V3格式加密：主密钥只派生一次，单条笔记只做一次 HKDF + AES-GCM
+     * Format: Base64(0x03 + masterSalt(16) + nonce(16) + iv(12) + timestamp(8) + ciphertext + tag)
+     * AAD 为整个头部（version..timestamp），篡改任一字段都会导致认证失败
+     */
+    private String encryptV3(String plaintext, SecretVault.Secret password) throws Exception {
+        byte[] masterSalt = getOrCreateMasterSalt();
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        RANDOM.nextBytes(nonce);
+        RANDOM.nextBytes(iv);
+
+        ByteBuffer header = ByteBuffer.allocate(V3_HEADER_LENGTH);
+        header.put(VERSION_V3).put(masterSalt).put(nonce).put(iv).putLong(System.currentTimeMillis());
+        byte[] headerBytes = header.array();
+
+        SecretKey masterKey = deriveMasterKeyV3(password, masterSalt);
+        SecretKey key = deriveNoteKeyV3(masterKey, nonce);
+
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(headerBytes);
+        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[headerBytes.length + ciphertext.length];
+        System.arraycopy(headerBytes, 0, combined, 0, headerBytes.length);
+        System.arraycopy(ciphertext, 0, combined, headerBytes.length, ciphertext.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    /**
+     * 主盐首次使用时生成并写入设置，之后固定不变（主密钥缓存命中的前提）
+     */
+    private byte[] getOrCreateMasterSalt() {
+        synchronized (masterSaltLock) {
+            String stored = settings.getEncryptionMasterSalt();
+            if (stored != null && !stored.isEmpty()) {
+                try {
+                    byte[] salt = Base64.getDecoder().decode(stored);
+                    if (salt.length == SALT_LENGTH) {
+                        return salt;
+                    }
+                } catch (IllegalArgumentException ignored) {
+                    // fall through and regenerate
+                }
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            settings.setEncryptionMasterSalt(Base64.getEncoder().encodeToString(salt));
+            settings.save();
+            return salt;
+        }
+    }
+
     /**
      * 使用Argon2+HKDF+AES-GCM解密
      * 支持检测旧格式（PBKDF2），但抛出异常提示需要重新加密
      */
     public String decrypt(String encryptedBase64) throws Exception {
-        String password = settings.getEncryptionPassword();
-        if (password == null || password.isEmpty()) {
+        SecretVault.Secret password = settings.getEncryptionPasswordSecret();
+        if (password.isEmpty()) {
             throw new IllegalStateException("Encryption password not set");
         }
 
@@ -138,9 +194,12 @@ public class CryptoService {
         // 检查版本标识
         byte version = combined[0];
 
-        if (version == 0x02) {
+        if (version == VERSION_V2) {
             // 新格式：Argon2+HKDF
             return decryptV2(combined, password);
+        } else if (version == VERSION_V3) {
+            // 主密钥 + 每条笔记 HKDF
+            return decryptV3(combined, password).plaintext;
         } else {
             // 旧格式（PBKDF2）或无版本标识
             // 尝试旧格式解密
@@ -153,7 +212,7 @@ public class CryptoService {
     /**
      * 解密V2格式（Argon2+HKDF）
      */
-    private String decryptV2(byte[] combined, String password) throws Exception {
+    private String decryptV2(byte[] combined, SecretVault.Secret password) throws Exception {
         int pos = 1; // 跳过版本字节
 
         byte[] salt = new byte[SALT_LENGTH];
@@ -190,55 +249,73 @@ public class CryptoService {
     }
 
     /**
-     * 使用Argon2id + HKDF派生AES密钥
+     * 解密V3格式（主密钥 + HKDF），主密钥按主盐缓存，单条只需一次 HKDF
      */
-    private SecretKey deriveKeyArgon2HKDF(String password, byte[] salt) {
-        // Invalidate cache if password changed
-        if (cachedPassword == null || !cachedPassword.equals(password)) {
-            keyCache.clear();
-            cachedPassword = password;
+    private DecryptionResult decryptV3(byte[] combined, SecretVault.Secret password) throws Exception {
+        if (combined.length < V3_HEADER_LENGTH + GCM_TAG_LENGTH / 8) {
+            throw new IllegalArgumentException("Invalid encrypted data format");
         }
 
-        // Check cache first
-        String saltKey = Base64.getEncoder().encodeToString(salt);
-        SecretKey cached = keyCache.get(saltKey);
-        if (cached != null) {
-            return cached;
+        ByteBuffer buffer = ByteBuffer.wrap(combined);
+        buffer.get(); // 跳过版本字节
+        byte[] masterSalt = new byte[SALT_LENGTH];
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        buffer.get(masterSalt).get(nonce).get(iv);
+        long timestamp = buffer.getLong();
+
+        long age = System.currentTimeMillis() - timestamp;
+        if (age > 100L * 365 * 24 * 60 * 60 * 1000) {
+            throw new SecurityException("Encrypted data is too old (>100 years), possible replay attack");
         }
 
-        // Step 1: Argon2id
-        Argon2Parameters.Builder builder = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
-                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
-                .withIterations(ARGON2_ITERATIONS)
-                .withMemoryAsKB(ARGON2_MEMORY_KB)
-                .withParallelism(ARGON2_PARALLELISM)
-                .withSalt(salt);
+        SecretKey masterKey = deriveMasterKeyV3(password, masterSalt);
+        SecretKey key = deriveNoteKeyV3(masterKey, nonce);
+
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(combined, 0, V3_HEADER_LENGTH);
+        byte[] plaintext = cipher.doFinal(combined, V3_HEADER_LENGTH, combined.length - V3_HEADER_LENGTH);
 
-        Argon2BytesGenerator argon2 = new Argon2BytesGenerator();
-        argon2.init(builder.build());
+        return new DecryptionResult(new String(plaintext, StandardCharsets.UTF_8), timestamp);
+    }
 
-        byte[] argon2Output = new byte[KEY_LENGTH];
-        argon2.generateBytes(password.toCharArray(), argon2Output);
+    /**
+     * V3 主密钥：Argon2id(密码, 主盐) + HKDF，与 v2 共用密钥缓存（缓存键加前缀区分用途）
+     */
+    private SecretKey deriveMasterKeyV3(SecretVault.Secret password, byte[] masterSalt) {
+        return deriveKeyArgon2HKDF(password, masterSalt, HKDF_INFO_MASTER_V3, "v3:");
+    }
 
-        // Step 2: HKDF-SHA256
+    /**
+     * V3 单条笔记密钥：HKDF-SHA256(主密钥, nonce)，不涉及 Argon2
+     */
+    private static SecretKey deriveNoteKeyV3(SecretKey masterKey, byte[] nonce) {
         HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
-        HKDFParameters hkdfParams = new HKDFParameters(argon2Output, salt, HKDF_INFO);
-        hkdf.init(hkdfParams);
+        hkdf.init(new HKDFParameters(masterKey.getEncoded(), nonce, HKDF_INFO_NOTE_V3));
+        byte[] noteKey = new byte[KEY_LENGTH];
+        hkdf.generateBytes(noteKey, 0, KEY_LENGTH);
+        return new SecretKeySpec(noteKey, "AES");
+    }
 
-        byte[] derivedKey = new byte[KEY_LENGTH];
-        hkdf.generateBytes(derivedKey, 0, KEY_LENGTH);
+    /**
+     * 使用Argon2id + HKDF派生AES密钥
+     */
+    private SecretKey deriveKeyArgon2HKDF(SecretVault.Secret password, byte[] salt) {
+        return deriveKeyArgon2HKDF(password, salt, HKDF_INFO, "");
+    }
 
-        SecretKey key = new SecretKeySpec(derivedKey, "AES");
-        keyCache.put(saltKey, key);
-        return key;
+    private SecretKey deriveKeyArgon2HKDF(SecretVault.Secret password, byte[] salt, byte[] hkdfInfo, String cachePrefix) {
+        // 进程内共享：内存预算、分段缓存和同盐单飞都在 Argon2KeyEngine 里
+        return keyEngine.derive(password, salt, hkdfInfo, cachePrefix);
     }
 
     /**
      * 解密并返回元数据
      */
     public DecryptionResult decryptWithMetadata(String encryptedBase64) throws Exception {
-        String password = settings.getEncryptionPassword();
-        if (password == null || password.isEmpty()) {
+        SecretVault.Secret password = settings.getEncryptionPasswordSecret();
+        if (password.isEmpty()) {
             throw new IllegalStateException("Encryption password not set");
         }
 
@@ -249,7 +326,10 @@ public class CryptoService {
         }
 
         byte version = combined[0];
-        if (version != 0x02) {
+        if (version == VERSION_V3) {
+            return decryptV3(combined, password);
+        }
+        if (version != VERSION_V2) {
             throw new UnsupportedOperationException("Unsupported encryption version");
         }
 
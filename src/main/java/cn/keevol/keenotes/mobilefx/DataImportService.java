@@ -1,33 +1,55 @@
 package cn.keevol.keenotes.mobilefx;
 
+import cn.keevol.keenotes.mobilefx.utils.DateTimeUtil;
 import io.vertx.core.json.JsonObject;
 import javafx.application.Platform;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 /**
  * Service for importing notes from NDJSON files
  */
 public class DataImportService {
     
+    private static final Logger logger = AppLogger.getLogger(DataImportService.class);
+    
     private static final DateTimeFormatter TS_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
+    // 服务器要求按文件顺序写入：同一时间只有一个请求在途，后面最多 ENCRYPT_AHEAD 条提前并行加密
+    private static final int ENCRYPT_AHEAD = 32;
+    private static final int MAX_SEND_ATTEMPTS = 4;
+    private static final long SEND_TIMEOUT_SEC = 60;
+    // 自适应节流：响应慢于目标延迟时拉大间隔，429/5xx/网络错误时至少退避到 BACKOFF_FLOOR_MS 并翻倍
+    private static final long TARGET_LATENCY_MS = 800;
+    private static final long BACKOFF_FLOOR_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    // 本地优先导入每个事务写入的笔记数
+    private static final int LOCAL_IMPORT_BATCH = 5_000;
+    
     private final ApiServiceV2 apiService;
     private final ExecutorService importExecutor;
+    private final ExecutorService encryptExecutor;
+    private final ForkJoinPool validationPool;
     private volatile boolean isImporting = false;
     private volatile boolean shouldCancel = false;
     private volatile boolean closed = false;
@@ -39,6 +61,26 @@ public class DataImportService {
             t.setDaemon(true);
             return t;
         });
+        // Argon2 内存由 Argon2KeyEngine 的预算限制，这里只限制线程数
+        int encryptThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.encryptExecutor = Executors.newFixedThreadPool(encryptThreads, r -> {
+            Thread t = new Thread(r, "data-import-encrypt");
+            t.setDaemon(true);
+            return t;
+        });
+        // 大文件校验按区间并行（见 NdjsonValidator），用独立的池，关闭时一并停止
+        this.validationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("data-import-validate-" + t.getPoolIndex());
+            return t;
+        }, null, false);
+    }
+    
+    /**
+     * A line read ahead of the sender: either invalid, or being encrypted.
+     */
+    private record PendingLine(long lineNumber, long endOffset, String raw, String invalid,
+                               CompletableFuture<ApiServiceV2.PreparedNote> prepared) {
     }
     
     /**
@@ -58,13 +100,44 @@ public class DataImportService {
      * Import progress callback
      */
     public interface ImportProgressListener {
-        void onProgress(int current, int total);
+        /**
+         * @param bytesRead  bytes of the file consumed so far
+         * @param totalBytes file size
+         * @param processed  notes processed (sent, failed or skipped as invalid)
+         */
+        void onProgress(long bytesRead, long totalBytes, int processed);
         void onComplete(int success, int failed, String failedFilePath);
         void onError(String error);
+        
+        /**
+         * Lines failed validation and were skipped (they are also listed in the failed-lines file). Coalesced like
+         * {@link #onProgress}: {@code invalidCount} is the running total of this run, with the latest one's details.
+         */
+        default void onInvalidLines(int invalidCount, long lastLineNumber, String lastError) {
+        }
+        
+        /**
+         * The file was imported partially before (cancelled, app closed or network lost); the import
+         * continues at {@code resumeOffset} instead of starting over.
+         */
+        default void onResumed(long resumeOffset, long totalBytes, int alreadyProcessed) {
+        }
+        
+        /**
+         * The import stopped before the end of the file: cancelled ({@code reason} null) or the server stayed
+         * unreachable or overloaded (network error, 408, 429 or 5xx after every retry). Progress up to {@code committedOffset} is kept; importing the same file again resumes there,
+         * {@link #discardResumableImport()} starts over instead.
+         */
+        default void onPaused(String reason, long committedOffset, long totalBytes, int processed) {
+            onError(reason != null
+                    ? "Server unavailable (" + reason + "). Import paused; import the same file again to resume."
+                    : "Import paused; import the same file again to resume.");
+        }
     }
     
     /**
-     * Validate NDJSON file format
+     * Validate NDJSON file format (in parallel for large files, see {@link NdjsonValidator}).
+     * {@link #importFile} validates each line in its own pass, so this is only needed as a standalone check.
      */
     public CompletableFuture<ValidationResult> validateFile(File file) {
         return CompletableFuture.supplyAsync(() -> {
@@ -76,49 +149,8 @@ public class DataImportService {
                 return ValidationResult.error("Cannot read file");
             }
             
-            int lineCount = 0;
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty()) {
-                        continue; // Skip empty lines
-                    }
-                    
-                    lineCount++;
-                    
-                    // Parse JSON
-                    try {
-                        JsonObject json = new JsonObject(line);
-                        
-                        // Validate required fields
-                        if (!json.containsKey("content") || json.getString("content") == null || json.getString("content").trim().isEmpty()) {
-                            return ValidationResult.error("Line " + lineCount + ": Missing or empty 'content' field");
-                        }
-                        
-                        if (!json.containsKey("channel") || json.getString("channel") == null || json.getString("channel").trim().isEmpty()) {
-                            return ValidationResult.error("Line " + lineCount + ": Missing or empty 'channel' field");
-                        }
-                        
-                        // Check for timestamp field (created_at or ts)
-                        boolean hasTimestamp = (json.containsKey("created_at") && json.getString("created_at") != null && !json.getString("created_at").trim().isEmpty()) ||
-                                             (json.containsKey("ts") && json.getString("ts") != null && !json.getString("ts").trim().isEmpty());
-                        
-                        if (!hasTimestamp) {
-                            return ValidationResult.error("Line " + lineCount + ": Missing 'created_at' or 'ts' field");
-                        }
-                        
-                    } catch (Exception e) {
-                        return ValidationResult.error("Line " + lineCount + ": Invalid JSON format - " + e.getMessage());
-                    }
-                }
-                
-                if (lineCount == 0) {
-                    return ValidationResult.error("File is empty");
-                }
-                
-                return ValidationResult.success(lineCount);
-                
+            try {
+                return NdjsonValidator.validate(file.toPath(), validationPool);
             } catch (Exception e) {
                 return ValidationResult.error("Error reading file: " + e.getMessage());
             }
@@ -130,7 +162,7 @@ public class DataImportService {
      */
     public CompletableFuture<Void> importFile(File file, ImportProgressListener listener) {
         if (isImporting) {
-            Platform.runLater(() -> listener.onError("Import already in progress"));
+            notifyListener(() -> listener.onError("Import already in progress"));
             return CompletableFuture.completedFuture(null);
         }
         
@@ -138,105 +170,259 @@ public class DataImportService {
         shouldCancel = false;
         
         return CompletableFuture.runAsync(() -> {
-            List<String> failedLines = new ArrayList<>();
-            AtomicInteger successCount = new AtomicInteger(0);
-            AtomicInteger failedCount = new AtomicInteger(0);
-            AtomicInteger totalLines = new AtomicInteger(0);
-            
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                // First pass: count total lines
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (!line.trim().isEmpty()) {
-                        totalLines.incrementAndGet();
-                    }
-                }
+            ImportJournal journal;
+            try {
+                SettingsService settings = SettingsService.getInstance();
+                journal = ImportJournal.open(file, ImportJournal.accountKey(settings.getEndpointUrl(), settings.getToken()));
             } catch (Exception e) {
+                isImporting = false;
                 if (!closed) {
-                    Platform.runLater(() -> listener.onError("Error counting lines: " + e.getMessage()));
+                    notifyListener(() -> listener.onError("Cannot open import journal: " + e.getMessage()));
                 }
-                isImporting = false;
                 return;
             }
+            // 从断点继续时计数也接着上次的累计
+            AtomicInteger successCount = new AtomicInteger(journal.success());
+            AtomicInteger failedCount = new AtomicInteger(journal.failed());
+            AtomicInteger current = new AtomicInteger(journal.processed());
+            AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(TARGET_LATENCY_MS, BACKOFF_FLOOR_MS, MAX_BACKOFF_MS);
+            FxCoalescer progressCoalescer = new FxCoalescer();
+            // 无效行可能成千上万：只报累计数和最近一条，最多一个待执行的 FX runnable
+            FxCoalescer invalidCoalescer = new FxCoalescer();
+            int invalidCount = 0;
+            // 已读入、正在（或已经）加密、尚未发送的行，按文件顺序排队
+            ArrayDeque<PendingLine> window = new ArrayDeque<>();
+            long startedAt = System.currentTimeMillis();
             
-            int total = totalLines.get();
-            AtomicInteger current = new AtomicInteger(0);
-            
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                int lineNumber = 0;
+            // 单次流式读取：计数、校验、加密、发送都在这一遍完成，进度按已读字节计算
+            try (NdjsonLineReader reader = new NdjsonLineReader(file.toPath(),
+                    journal.committedOffset(), journal.committedLines())) {
+                long totalBytes = reader.size();
+                if (journal.isResumed() && !closed) {
+                    long resumeOffset = journal.committedOffset();
+                    int alreadyProcessed = journal.processed();
+                    notifyListener(() -> listener.onResumed(resumeOffset, totalBytes, alreadyProcessed));
+                }
+                boolean eof = false;
+                boolean finished = false;
+                String pausedReason = null;
                 
-                while ((line = reader.readLine()) != null && !shouldCancel) {
-                    line = line.trim();
-                    if (line.isEmpty()) {
-                        continue;
+                while (!shouldCancel) {
+                    // 保持 ENCRYPT_AHEAD 条在加密池里提前加密，发送线程只负责按序发送
+                    while (!eof && window.size() < ENCRYPT_AHEAD) {
+                        NdjsonLineReader.Line line = reader.next();
+                        if (line == null) {
+                            eof = true;
+                            break;
+                        }
+                        String text = line.text().trim();
+                        if (text.isEmpty()) {
+                            continue;
+                        }
+                        String invalid = NdjsonValidator.validateLine(text);
+                        CompletableFuture<ApiServiceV2.PreparedNote> prepared = invalid == null
+                                ? prepareLine(text, journal.requestIdFor(line.startOffset()))
+                                : null;
+                        window.add(new PendingLine(line.lineNumber(), line.endOffset(), text, invalid, prepared));
                     }
                     
-                    lineNumber++;
-                    final int currentLine = lineNumber;
-                    final String currentLineContent = line;
+                    PendingLine next = window.poll();
+                    if (next == null) {
+                        finished = true;
+                        break;
+                    }
                     
-                    try {
-                        JsonObject json = new JsonObject(line);
-                        
-                        // Extract fields
-                        String content = json.getString("content");
-                        String channel = json.getString("channel");
-                        String timestamp = json.containsKey("created_at") ? 
-                                         json.getString("created_at") : 
-                                         json.getString("ts");
-                        Boolean encrypted = json.getBoolean("encrypted", false);
-                        
-                        // Send note based on encryption status
-                        CompletableFuture<ApiServiceV2.ApiResult> sendFuture;
-                        
-                        if (encrypted != null && encrypted) {
-                            // Already encrypted - send directly without encryption
-                            sendFuture = apiService.postNoteDirectlyNormalizingTimestamp(content, channel, timestamp);
-                        } else {
-                            // Not encrypted - use normal E2EE flow
-                            sendFuture = apiService.postNoteNormalizingTimestamp(content, channel, timestamp);
+                    if (next.invalid() != null) {
+                        failedCount.incrementAndGet();
+                        journal.recordFailed("Line " + next.lineNumber() + ": " + next.invalid() + " | Data: " + next.raw());
+                        int invalidSoFar = ++invalidCount;
+                        if (!closed) {
+                            invalidCoalescer.runLater(() -> listener.onInvalidLines(invalidSoFar, next.lineNumber(),
+                                    next.invalid()));
                         }
-                        
-                        // Wait for result
-                        ApiServiceV2.ApiResult result = sendFuture.get();
-                        
-                        if (result.success()) {
-                            successCount.incrementAndGet();
-                        } else {
+                    } else {
+                        try {
+                            // get() 而不是 join()：关闭时加密池丢弃排队任务，future 永不完成，只能靠中断退出
+                            ApiServiceV2.PreparedNote note = next.prepared().get();
+                            ApiServiceV2.ApiResult result = sendWithPacing(note, limiter);
+                            if (result == null) {
+                                break; // cancelled while waiting for the limiter
+                            }
+                            if (result.retryable()) {
+                                // 重试后仍连不上或服务器仍过载：暂停导入，这一行不提交，下次导入同一文件时以相同 request_id 重发
+                                pausedReason = result.message();
+                                break;
+                            }
+                            
+                            if (result.success()) {
+                                successCount.incrementAndGet();
+                            } else {
+                                failedCount.incrementAndGet();
+                                journal.recordFailed("Line " + next.lineNumber() + ": " + result.message() + " | Data: " + next.raw());
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        } catch (Exception e) {
+                            Throwable cause = (e instanceof ExecutionException || e instanceof CompletionException)
+                                    && e.getCause() != null ? e.getCause() : e;
                             failedCount.incrementAndGet();
-                            failedLines.add("Line " + currentLine + ": " + result.message() + " | Data: " + currentLineContent);
+                            journal.recordFailed("Line " + next.lineNumber() + ": " + cause.getMessage() + " | Data: " + next.raw());
                         }
-                        
-                    } catch (Exception e) {
-                        failedCount.incrementAndGet();
-                        failedLines.add("Line " + currentLine + ": " + e.getMessage() + " | Data: " + currentLineContent);
                     }
                     
-                    // Update progress
+                    // 这一行已处理完（成功、失败或跳过），提交断点
                     int prog = current.incrementAndGet();
+                    long bytesDone = next.endOffset();
+                    journal.commit(bytesDone, next.lineNumber(), prog, successCount.get(), failedCount.get());
+                    
+                    // Update progress (coalesced: at most one pending FX runnable)
                     if (!closed) {
-                        Platform.runLater(() -> listener.onProgress(prog, total));
+                        progressCoalescer.runLater(() -> listener.onProgress(bytesDone, totalBytes, prog));
                     }
-                    
-                    // Small delay to avoid overwhelming the server
-                    Thread.sleep(100);
                 }
+                cancelPending(window);
+                
+                if (pausedReason != null || !finished) {
+                    // 网络不可用或用户取消（或关闭应用）：保留断点日志，重新导入同一文件即可继续
+                    String reason = pausedReason;
+                    long committed = journal.committedOffset();
+                    int processed = current.get();
+                    if (reason != null) {
+                        logger.warning("Import paused at byte " + committed + ": " + reason);
+                    } else {
+                        logger.info("Import cancelled at byte " + committed);
+                    }
+                    if (!closed) {
+                        notifyListener(() -> listener.onPaused(reason, committed, totalBytes, processed));
+                    }
+                    return;
+                }
+                if (current.get() == 0) {
+                    journal.delete();
+                    if (!closed) {
+                        notifyListener(() -> listener.onError("File is empty"));
+                    }
+                    return;
+                }
+                logger.info("Import finished: success=" + successCount.get() + " failed=" + failedCount.get()
+                        + " elapsedMs=" + (System.currentTimeMillis() - startedAt)
+                        + " throttled=" + limiter.throttledCount() + " finalDelayMs=" + limiter.currentDelayMs());
                 
                 // Write failed lines to file if any
                 String failedFilePath = null;
+                List<String> failedLines = journal.failedLines();
                 if (!failedLines.isEmpty()) {
                     failedFilePath = writeFailedLines(file, failedLines);
                 }
+                journal.delete();
                 
                 final String finalFailedFilePath = failedFilePath;
                 if (!closed) {
-                    Platform.runLater(() -> listener.onComplete(successCount.get(), failedCount.get(), finalFailedFilePath));
+                    notifyListener(() -> listener.onComplete(successCount.get(), failedCount.get(), finalFailedFilePath));
+                }
+                
+            } catch (Exception e) {
+                cancelPending(window);
+                if (!closed) {
+                    notifyListener(() -> listener.onError("Import error: " + e.getMessage()));
+                }
+            } finally {
+                isImporting = false;
+            }
+        }, importExecutor);
+    }
+    
+    /**
+     * Offline-first import: notes go straight into the local cache in large transactions (searchable as soon as
+     * each batch commits) and into the pending-notes outbox, which uploads them in the background; see
+     * {@link LocalCacheService#importNotesLocally}. Progress and invalid lines are reported as in {@link #importFile};
+     * {@code onComplete} fires once everything is stored locally, not when the upload finishes.
+     */
+    public CompletableFuture<Void> importFileLocally(File file, ImportProgressListener listener) {
+        if (isImporting) {
+            notifyListener(() -> listener.onError("Import already in progress"));
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        isImporting = true;
+        shouldCancel = false;
+        
+        return CompletableFuture.runAsync(() -> {
+            LocalCacheService cache = LocalCacheService.getInstance();
+            List<String> failedLines = new ArrayList<>();
+            List<ApiServiceV2.PreparedNote> batch = new ArrayList<>(LOCAL_IMPORT_BATCH);
+            int success = 0;
+            int processed = 0;
+            FxCoalescer progressCoalescer = new FxCoalescer();
+            FxCoalescer invalidCoalescer = new FxCoalescer();
+            long startedAt = System.currentTimeMillis();
+            
+            try (NdjsonLineReader reader = new NdjsonLineReader(file.toPath())) {
+                // 与服务器优先导入使用同样的稳定 request_id：同一文件重复导入时服务器可以去重
+                String fingerprint = ImportJournal.fingerprint(file);
+                long totalBytes = reader.size();
+                NdjsonLineReader.Line line;
+                
+                while (!shouldCancel && (line = reader.next()) != null) {
+                    String text = line.text().trim();
+                    if (text.isEmpty()) {
+                        continue;
+                    }
+                    processed++;
+                    String invalid = NdjsonValidator.validateLine(text);
+                    if (invalid == null) {
+                        try {
+                            batch.add(parseLine(text, ImportJournal.requestId(fingerprint, line.startOffset())));
+                        } catch (Exception e) {
+                            invalid = e.getMessage();
+                        }
+                    }
+                    if (invalid != null) {
+                        long lineNumber = line.lineNumber();
+                        String reason = invalid;
+                        failedLines.add("Line " + lineNumber + ": " + reason + " | Data: " + text);
+                        int invalidSoFar = failedLines.size();
+                        if (!closed) {
+                            invalidCoalescer.runLater(() -> listener.onInvalidLines(invalidSoFar, lineNumber, reason));
+                        }
+                    }
+                    
+                    if (batch.size() >= LOCAL_IMPORT_BATCH) {
+                        success += cache.importNotesLocally(batch);
+                        batch.clear();
+                        int prog = processed;
+                        long bytesDone = line.endOffset();
+                        if (!closed) {
+                            progressCoalescer.runLater(() -> listener.onProgress(bytesDone, totalBytes, prog));
+                        }
+                    }
+                }
+                if (!shouldCancel && !batch.isEmpty()) {
+                    success += cache.importNotesLocally(batch);
                 }
                 
+                if (!shouldCancel && processed == 0) {
+                    if (!closed) {
+                        notifyListener(() -> listener.onError("File is empty"));
+                    }
+                    return;
+                }
+                if (success > 0) {
+                    PendingNoteService.getInstance().retryNow();
+                }
+                logger.info("Local import finished: stored=" + success + " invalid=" + failedLines.size()
+                        + " elapsedMs=" + (System.currentTimeMillis() - startedAt));
+                
+                String failedFilePath = failedLines.isEmpty() ? null : writeFailedLines(file, failedLines);
+                int stored = success;
+                int failed = failedLines.size();
+                if (!closed) {
+                    notifyListener(() -> listener.onComplete(stored, failed, failedFilePath));
+                }
             } catch (Exception e) {
                 if (!closed) {
-                    Platform.runLater(() -> listener.onError("Import error: " + e.getMessage()));
+                    notifyListener(() -> listener.onError("Import error: " + e.getMessage()));
                 }
             } finally {
                 isImporting = false;
@@ -244,6 +430,103 @@ public class DataImportService {
         }, importExecutor);
     }
     
+    /**
+     * Deliver a listener callback on the FX thread (inline when there is no FX toolkit, e.g. in harnesses).
+     */
+    private static void notifyListener(Runnable callback) {
+        try {
+            Platform.runLater(callback);
+        } catch (IllegalStateException toolkitNotRunning) {
+            callback.run();
+        }
+    }
+    
+    private static void cancelPending(ArrayDeque<PendingLine> window) {
+        for (PendingLine pending : window) {
+            if (pending.prepared() != null) {
+                pending.prepared().cancel(false);
+            }
+        }
+    }
+    
+    /**
+     * Parse one NDJSON line and start encrypting it on the encrypt pool, tagged with {@code requestId}.
+     * Lines marked {@code "encrypted": true} are already ciphertext and are only wrapped.
+     */
+    private CompletableFuture<ApiServiceV2.PreparedNote> prepareLine(String line, String requestId) {
+        try {
+            ApiServiceV2.PreparedNote parsed = parseLine(line, requestId);
+            if (parsed.content() == null) {
+                // Already encrypted - send directly without encryption
+                return CompletableFuture.completedFuture(new ApiServiceV2.PreparedNote(
+                        parsed.encryptedContent(), parsed.encryptedContent(), parsed.channel(), parsed.createdAt(), requestId));
+            }
+            // Not encrypted - use normal E2EE flow, keeping the journal's stable request_id
+            return apiService.prepareNote(parsed.content(), parsed.channel(), parsed.createdAt(), encryptExecutor)
+                    .thenApply(note -> new ApiServiceV2.PreparedNote(note.content(), note.encryptedContent(),
+                            note.channel(), note.createdAt(), requestId));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Parse one validated NDJSON line without encrypting it: plaintext lines come back with
+     * {@code encryptedContent == null}, lines marked {@code "encrypted": true} with {@code content == null}.
+     */
+    private static ApiServiceV2.PreparedNote parseLine(String line, String requestId) {
+        JsonObject json = new JsonObject(line);
+        
+        // Extract fields
+        String content = json.getString("content");
+        String channel = json.getString("channel");
+        String timestamp = json.containsKey("created_at") ? 
+                         json.getString("created_at") : 
+                         json.getString("ts");
+        Boolean encrypted = json.getBoolean("encrypted", false);
+        String utcTs = DateTimeUtil.normalizeToUtc(timestamp);
+        
+        if (content == null || content.isBlank()) {
+            throw new IllegalArgumentException("Note content cannot be empty.");
+        }
+        if (encrypted != null && encrypted) {
+            return new ApiServiceV2.PreparedNote(null, content, channel, utcTs, requestId);
+        }
+        return new ApiServiceV2.PreparedNote(content, null, channel, utcTs, requestId);
+    }
+    
+    /**
+     * Send one note, paced by {@code limiter}; {@link ApiServiceV2.ApiResult#retryable() retryable} failures
+     * (network, 408, 429, 5xx) are retried with the same request_id after the limiter backs off.
+     *
+     * @return the last result, or null if the import was cancelled while waiting
+     */
+    private ApiServiceV2.ApiResult sendWithPacing(ApiServiceV2.PreparedNote note, AdaptiveRateLimiter limiter)
+            throws Exception {
+        ApiServiceV2.ApiResult result = null;
+        for (int attempt = 1; attempt <= MAX_SEND_ATTEMPTS; attempt++) {
+            if (!limiter.acquire(() -> shouldCancel)) {
+                return null;
+            }
+            long start = System.nanoTime();
+            try {
+                result = apiService.postPreparedNote(note).get(SEND_TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                result = ApiServiceV2.ApiResult.networkFailure("Request timed out after " + SEND_TIMEOUT_SEC + "s");
+            }
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            
+            if (!result.retryable()) {
+                limiter.onSuccess(latencyMs);
+                return result;
+            }
+            limiter.onThrottled();
+            logger.warning("Import send attempt " + attempt + " failed (" + result.message()
+                    + "), backing off " + limiter.currentDelayMs() + "ms");
+        }
+        return result;
+    }
+    
     /**
      * Write failed lines to a temporary file
      */
@@ -280,6 +563,20 @@ public class DataImportService {
         shouldCancel = true;
     }
     
+    /**
+     * Drop the saved progress of a paused import so the next import of that file starts from its first line.
+     * Lines already sent are re-sent with the same request_id and deduplicated by the server.
+     *
+     * @return false if an import is running (pause it first)
+     */
+    public boolean discardResumableImport() {
+        if (isImporting) {
+            return false;
+        }
+        ImportJournal.discard();
+        return true;
+    }
+    
     /**
      * Check if import is in progress
      */
@@ -294,5 +591,7 @@ public class DataImportService {
         closed = true;
         shouldCancel = true;
         importExecutor.shutdownNow();
+        encryptExecutor.shutdownNow();
+        validationPool.shutdownNow();
     }
 }
@@ -25,11 +25,16 @@ public class DataImportView extends VBox {
     private final Label fileLabel;
     private final Label statusLabel;
     private final Button chooseFileButton;
+    private final Button pauseButton;
+    private final Button startOverButton;
     private final ProgressBar progressBar;
     private final Label progressLabel;
+    private final ToggleSwitch localFirstToggle;
     private final TextField localImportServerPortField;
     private final Label portStatusLabel;
     private File selectedFile;
+    // 暂停（取消或网络中断）后保留断点的文件，“Start Over” 用它从头重新导入
+    private File pausedFile;
     
     public DataImportView() {
         this.importService = new DataImportService(ServiceManager.getInstance().getApiService());
@@ -39,10 +44,13 @@ public class DataImportView extends VBox {
         this.localImportServerPortField = new TextField();
         this.portStatusLabel = new Label("");
         this.chooseFileButton = new Button("Choose File...");
+        this.pauseButton = new Button("Pause");
+        this.startOverButton = new Button("Start Over");
         this.fileLabel = new Label("No file selected");
         this.statusLabel = new Label("");
         this.progressBar = new ProgressBar(0);
         this.progressLabel = new Label("");
+        this.localFirstToggle = new ToggleSwitch();
         
         setPadding(new Insets(0)); // Remove padding, let sections handle their own
         setSpacing(0);
@@ -175,6 +183,20 @@ public class DataImportView extends VBox {
         HBox fileRow = new HBox(16, fileChooseLabel, chooseFileButton);
         fileRow.setAlignment(Pos.CENTER_LEFT);
         
+        // Local-first mode: notes are searchable immediately, uploaded in the background
+        Label localFirstLabel = new Label("Import Locally First");
+        localFirstLabel.getStyleClass().add("field-label");
+        localFirstLabel.setMinWidth(259);
+        localFirstLabel.setMaxWidth(259);
+        localFirstLabel.setAlignment(Pos.CENTER_RIGHT);
+        
+        Label localFirstHint = new Label("Store notes locally right away and upload them in the background");
+        localFirstHint.getStyleClass().add("field-hint");
+        localFirstHint.setWrapText(true);
+        
+        HBox localFirstRow = new HBox(16, localFirstLabel, localFirstToggle, localFirstHint);
+        localFirstRow.setAlignment(Pos.CENTER_LEFT);
+        
         // Status label row (aligned with label)
         Label statusSpacer = new Label();
         statusSpacer.setMinWidth(259);
@@ -202,13 +224,26 @@ public class DataImportView extends VBox {
         progressSpacer.setMinWidth(259);
         progressSpacer.setMaxWidth(259);
         
-        VBox progressContent = new VBox(8, progressBar, progressLabel);
+        // Pause keeps the import journal (importing the same file again resumes); Start Over discards it
+        pauseButton.getStyleClass().add("action-button");
+        pauseButton.setOnAction(e -> {
+            pauseButton.setDisable(true);
+            importService.cancelImport();
+        });
+        startOverButton.getStyleClass().add("action-button");
+        startOverButton.setOnAction(e -> startOver());
+        setVisibleManaged(pauseButton, false);
+        setVisibleManaged(startOverButton, false);
+        HBox importActions = new HBox(12, pauseButton, startOverButton);
+        importActions.setAlignment(Pos.CENTER_LEFT);
+        
+        VBox progressContent = new VBox(8, progressBar, progressLabel, importActions);
         HBox.setHgrow(progressContent, Priority.ALWAYS);
         
         HBox progressRow = new HBox(16, progressSpacer, progressContent);
         progressRow.setAlignment(Pos.CENTER_LEFT);
         
-        section.getChildren().addAll(sectionLabel, descLabel, fileRow, statusRow, progressRow);
+        section.getChildren().addAll(sectionLabel, descLabel, fileRow, localFirstRow, statusRow, progressRow);
         return section;
     }
     
@@ -224,56 +259,90 @@ public class DataImportView extends VBox {
         if (file != null && file.exists()) {
             selectedFile = file;
             fileLabel.setText(file.getName());
-            statusLabel.setText("Validating file format...");
+            statusLabel.setText("Starting import in background...");
             statusLabel.setStyle("-fx-text-fill: -fx-text-primary;");
             
-            // Validate file
-            importService.validateFile(file).thenAccept(result -> {
-                javafx.application.Platform.runLater(() -> {
-                    if (result.valid()) {
-                        statusLabel.setText("✓ Valid format (" + result.lineCount() + " lines). Starting import in background...");
-                        statusLabel.setStyle("-fx-text-fill: #4CAF50;");
-                        
-                        // Start import
-                        startImport(file, result.lineCount());
-                        
-                    } else {
-                        statusLabel.setText("✗ " + result.errorMessage());
-                        statusLabel.setStyle("-fx-text-fill: #F44336;");
-                        selectedFile = null;
-                    }
-                });
-            });
+            // Lines are validated during the import pass; invalid ones are skipped and reported
+            startImport(file);
         }
     }
     
-    private void startImport(File file, int totalLines) {
+    private void startImport(File file) {
+        boolean localFirst = localFirstToggle.isSelected();
         // Show progress UI
         progressBar.setVisible(true);
         progressBar.setManaged(true);
         progressLabel.setVisible(true);
         progressLabel.setManaged(true);
         progressBar.setProgress(0);
-        progressLabel.setText("Importing 0 / " + totalLines);
+        progressLabel.setText("Importing 0 / " + formatMegabytes(file.length()) + " MB");
         
         // Disable file chooser during import
         chooseFileButton.setDisable(true);
+        localFirstToggle.setDisable(true);
+        pausedFile = null;
+        setVisibleManaged(startOverButton, false);
+        // 本地优先导入没有断点日志，不提供暂停
+        pauseButton.setDisable(false);
+        setVisibleManaged(pauseButton, !localFirst);
         
         // Notify status bar
         notifyImportStarted();
         
         // Start import
-        importService.importFile(file, new DataImportService.ImportProgressListener() {
+        DataImportService.ImportProgressListener listener = new DataImportService.ImportProgressListener() {
             @Override
-            public void onProgress(int current, int total) {
-                double progress = (double) current / total;
+            public void onProgress(long bytesRead, long totalBytes, int processed) {
+                double progress = totalBytes > 0 ? (double) bytesRead / totalBytes : 1.0;
                 progressBar.setProgress(progress);
-                progressLabel.setText("Importing " + current + " / " + total);
+                progressLabel.setText("Importing " + formatMegabytes(bytesRead) + " / " + formatMegabytes(totalBytes)
+                        + " MB (" + processed + " notes)");
+            }
+            
+            @Override
+            public void onResumed(long resumeOffset, long totalBytes, int alreadyProcessed) {
+                statusLabel.setText("Resuming previous import at " + formatMegabytes(resumeOffset) + " / "
+                        + formatMegabytes(totalBytes) + " MB (" + alreadyProcessed + " notes already processed)...");
+                statusLabel.setStyle("-fx-text-fill: -fx-text-primary;");
+            }
+            
+            @Override
+            public void onInvalidLines(int invalidCount, long lastLineNumber, String lastError) {
+                statusLabel.setText("⚠ Skipped " + invalidCount + " invalid line" + (invalidCount == 1 ? "" : "s")
+                        + " (latest: line " + lastLineNumber + ": " + lastError + ")");
+                statusLabel.setStyle("-fx-text-fill: #FF9800;");
+            }
+            
+            @Override
+            public void onPaused(String reason, long committedOffset, long totalBytes, int processed) {
+                progressBar.setVisible(false);
+                progressBar.setManaged(false);
+                progressLabel.setVisible(false);
+                progressLabel.setManaged(false);
+                setVisibleManaged(pauseButton, false);
+                
+                chooseFileButton.setDisable(false);
+                localFirstToggle.setDisable(false);
+                
+                // 保留断点：再次导入同一文件从这里继续，或点 Start Over 从头开始
+                pausedFile = file;
+                setVisibleManaged(startOverButton, true);
+                
+                String message = (reason != null ? "⏸ Import paused, server unavailable (" + reason + ")"
+                        : "⏸ Import paused")
+                        + " at " + formatMegabytes(committedOffset) + " / " + formatMegabytes(totalBytes)
+                        + " MB (" + processed + " notes processed). Import the same file again to resume.";
+                statusLabel.setText(message);
+                statusLabel.setStyle("-fx-text-fill: #FF9800;");
+                
+                notifyImportPaused();
+                showNotification("Import Paused", message);
             }
             
             @Override
             public void onComplete(int success, int failed, String failedFilePath) {
                 // Hide progress UI
+                setVisibleManaged(pauseButton, false);
                 progressBar.setVisible(false);
                 progressBar.setManaged(false);
                 progressLabel.setVisible(false);
@@ -285,9 +354,12 @@ public class DataImportView extends VBox {
                 
                 // Enable file chooser
                 chooseFileButton.setDisable(false);
+                localFirstToggle.setDisable(false);
                 
                 // Show result
-                String message = "✓ Import complete: " + success + " succeeded";
+                String message = localFirst
+                        ? "✓ Imported locally: " + success + " notes (uploading in background)"
+                        : "✓ Import complete: " + success + " succeeded";
                 if (failed > 0) {
                     message += ", " + failed + " failed";
                     if (failedFilePath != null) {
@@ -307,6 +379,7 @@ public class DataImportView extends VBox {
             @Override
             public void onError(String error) {
                 // Hide progress UI
+                setVisibleManaged(pauseButton, false);
                 progressBar.setVisible(false);
                 progressBar.setManaged(false);
                 progressLabel.setVisible(false);
@@ -314,6 +387,7 @@ public class DataImportView extends VBox {
                 
                 // Enable file chooser
                 chooseFileButton.setDisable(false);
+                localFirstToggle.setDisable(false);
                 
                 // Show error
                 statusLabel.setText("✗ Import error: " + error);
@@ -325,7 +399,43 @@ public class DataImportView extends VBox {
                 // Show system notification
                 showNotification("Import Error", error);
             }
-        });
+        };
+        if (localFirst) {
+            importService.importFileLocally(file, listener);
+        } else {
+            importService.importFile(file, listener);
+        }
+    }
+    
+    /**
+     * Discard the paused import's journal and import the same file again from its first line.
+     */
+    private void startOver() {
+        File file = pausedFile;
+        if (file == null || !importService.discardResumableImport()) {
+            return;
+        }
+        setVisibleManaged(startOverButton, false);
+        if (!file.exists()) {
+            pausedFile = null;
+            statusLabel.setText("Import progress discarded");
+            statusLabel.setStyle("-fx-text-fill: -fx-text-primary;");
+            return;
+        }
+        selectedFile = file;
+        fileLabel.setText(file.getName());
+        statusLabel.setText("Starting import over...");
+        statusLabel.setStyle("-fx-text-fill: -fx-text-primary;");
+        startImport(file);
+    }
+    
+    private static void setVisibleManaged(javafx.scene.Node node, boolean visible) {
+        node.setVisible(visible);
+        node.setManaged(visible);
+    }
+    
+    private static String formatMegabytes(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
     }
     
     private void notifyImportStarted() {
@@ -362,6 +472,21 @@ public class DataImportView extends VBox {
         }
     }
     
+    private void notifyImportPaused() {
+        // Find StatusFooterBar and update
+        javafx.scene.Node node = this;
+        while (node != null) {
+            if (node instanceof javafx.scene.layout.BorderPane) {
+                javafx.scene.Node bottom = ((javafx.scene.layout.BorderPane) node).getBottom();
+                if (bottom instanceof StatusFooterBar) {
+                    ((StatusFooterBar) bottom).setImportStatus("Import paused", false);
+                    break;
+                }
+            }
+            node = node.getParent();
+        }
+    }
+    
     private void notifyImportError(String error) {
         // Find StatusFooterBar and update
         javafx.scene.Node node = this;
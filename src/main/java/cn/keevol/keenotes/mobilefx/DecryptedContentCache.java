@@ -0,0 +1,58 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU of decrypted note content (note id → plaintext), used by lazy decryption.
+ * The bound is the total number of cached characters, so a few huge notes cannot pin the heap.
+ */
+final class DecryptedContentCache {
+
+    private final long maxChars;
+    private long totalChars = 0;
+    private final LinkedHashMap<Long, String> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    DecryptedContentCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    synchronized String get(long id) {
+        return entries.get(id);
+    }
+
+    synchronized void put(long id, String content) {
+        if (content == null || content.length() > maxChars) {
+            return;
+        }
+        String previous = entries.put(id, content);
+        if (previous != null) {
+            totalChars -= previous.length();
+        }
+        totalChars += content.length();
+
+        Iterator<Map.Entry<Long, String>> it = entries.entrySet().iterator();
+        while (totalChars > maxChars && it.hasNext()) {
+            Map.Entry<Long, String> eldest = it.next();
+            totalChars -= eldest.getValue().length();
+            it.remove();
+        }
+    }
+
+    synchronized void remove(long id) {
+        String previous = entries.remove(id);
+        if (previous != null) {
+            totalChars -= previous.length();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -16,13 +16,20 @@ final class FxCoalescer {
     void runLater(Runnable action) {
         pending = action;
         if (scheduled.compareAndSet(false, true)) {
-            Platform.runLater(() -> {
-                scheduled.set(false);
-                Runnable task = pending;
-                if (task != null) {
-                    task.run();
-                }
-            });
+            try {
+                Platform.runLater(this::drain);
+            } catch (IllegalStateException toolkitNotRunning) {
+                // 无 JavaFX 的场景（导入/同步压测等）直接在当前线程执行
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+        Runnable task = pending;
+        if (task != null) {
+            task.run();
         }
     }
 }
@@ -0,0 +1,256 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * 导入断点日志，保存在 ~/.keenotes/import_journal.properties（与 keenotes_cache.db 同目录）。
+ * 记录源文件指纹、导入目标账户（endpoint + token 的哈希）、最后一个已提交行之后的字节偏移和累计计数；
+ * 每处理完一行就原子替换一次。换了账户或 endpoint 的断点不会被续用，切换账户和清空数据时整个删除。
+ * 每行的 request_id 由指纹和行起始偏移推导，重启后在途的那一行会以相同 request_id 重发，由服务器去重。
+ * 失败行追加到 import_journal_failed.txt，最终报告时合并。
+ */
+final class ImportJournal {
+
+    private static final Logger logger = AppLogger.getLogger(ImportJournal.class);
+
+    private static final String JOURNAL_FILE = "import_journal.properties";
+    private static final String FAILED_FILE = "import_journal_failed.txt";
+    // 指纹取文件头尾各 64KB，加上大小与修改时间，避免对大文件整体哈希
+    private static final int FINGERPRINT_SAMPLE = 64 * 1024;
+
+    private final Path journalFile;
+    private final Path failedFile;
+    private final String fingerprint;
+    private final String accountKey;
+    private final String sourcePath;
+    private final boolean resumed;
+
+    private long committedOffset;
+    private long committedLines;
+    private int processed;
+    private int success;
+    private int failed;
+
+    private ImportJournal(Path dir, String fingerprint, String accountKey, String sourcePath, Properties saved) {
+        this.journalFile = dir.resolve(JOURNAL_FILE);
+        this.failedFile = dir.resolve(FAILED_FILE);
+        this.fingerprint = fingerprint;
+        this.accountKey = accountKey;
+        this.sourcePath = sourcePath;
+        this.resumed = saved != null;
+        if (saved != null) {
+            committedOffset = Long.parseLong(saved.getProperty("committed.offset", "0"));
+            committedLines = Long.parseLong(saved.getProperty("committed.lines", "0"));
+            processed = Integer.parseInt(saved.getProperty("processed", "0"));
+            success = Integer.parseInt(saved.getProperty("success", "0"));
+            failed = Integer.parseInt(saved.getProperty("failed", "0"));
+        }
+    }
+
+    /**
+     * Load the journal for {@code file}, or start a new one if there is none or it belongs to another
+     * file (or to an earlier version of this one), or was written while importing into another account.
+     *
+     * @param accountKey see {@link #accountKey}
+     */
+    static ImportJournal open(File file, String accountKey) throws IOException {
+        Path dir = journalDir();
+        Files.createDirectories(dir);
+        String fingerprint = fingerprint(file);
+        Path journalFile = dir.resolve(JOURNAL_FILE);
+
+        Properties saved = null;
+        if (Files.exists(journalFile)) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(journalFile)) {
+                props.load(in);
+                if (!fingerprint.equals(props.getProperty("fingerprint"))) {
+                    logger.info("Discarding import journal of " + props.getProperty("source"));
+                } else if (!accountKey.equals(props.getProperty("account"))) {
+                    // 之前的行只上传到了另一个账户，不能跳过
+                    logger.info("Discarding import journal of " + props.getProperty("source")
+                            + ": written for another account or endpoint");
+                } else {
+                    saved = props;
+                }
+            } catch (Exception e) {
+                logger.warning("Unreadable import journal, starting over: " + e.getMessage());
+            }
+        }
+        ImportJournal journal = new ImportJournal(dir, fingerprint, accountKey, file.getAbsolutePath(), saved);
+        if (saved == null) {
+            Files.deleteIfExists(journal.failedFile);
+        } else {
+            logger.info("Resuming import of " + file.getName() + " at byte " + journal.committedOffset
+                    + " (" + journal.processed + " notes already processed)");
+        }
+        return journal;
+    }
+
+    /**
+     * Identifies the import target (endpoint + token) without storing the token itself.
+     */
+    static String accountKey(String endpointUrl, String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(((endpointUrl == null ? "" : endpointUrl.trim()) + "\n" + (token == null ? "" : token))
+                    .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Forget any saved import progress (account switched, local data cleared, or the user chose to start over).
+     */
+    static void discard() {
+        Path dir = journalDir();
+        try {
+            Files.deleteIfExists(dir.resolve(JOURNAL_FILE));
+            Files.deleteIfExists(dir.resolve(FAILED_FILE));
+        } catch (IOException e) {
+            logger.warning("Failed to discard import journal: " + e.getMessage());
+        }
+    }
+
+    private static Path journalDir() {
+        return Path.of(System.getProperty("user.home"), ".keenotes");
+    }
+
+    static String fingerprint(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((size + ":" + file.lastModified()).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer sample = ByteBuffer.allocate(FINGERPRINT_SAMPLE);
+            readFully(channel, sample, 0);
+            digest.update(sample.flip());
+            if (size > FINGERPRINT_SAMPLE) {
+                sample.clear();
+                readFully(channel, sample, Math.max(FINGERPRINT_SAMPLE, size - FINGERPRINT_SAMPLE));
+                digest.update(sample.flip());
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    boolean isResumed() {
+        return resumed;
+    }
+
+    long committedOffset() {
+        return committedOffset;
+    }
+
+    long committedLines() {
+        return committedLines;
+    }
+
+    int processed() {
+        return processed;
+    }
+
+    int success() {
+        return success;
+    }
+
+    int failed() {
+        return failed;
+    }
+
+    /**
+     * Stable request_id of the line starting at {@code lineStartOffset}: the same line of the same file
+     * always gets the same id, so a line re-sent after a restart is deduplicated by the server.
+     */
+    String requestIdFor(long lineStartOffset) {
+        return requestId(fingerprint, lineStartOffset);
+    }
+
+    static String requestId(String fingerprint, long lineStartOffset) {
+        return UUID.nameUUIDFromBytes((fingerprint + ":" + lineStartOffset).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    void recordFailed(String failedLine) throws IOException {
+        Files.writeString(failedFile, failedLine + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Failed lines of all sessions of this import (including the current one).
+     */
+    List<String> failedLines() throws IOException {
+        if (!Files.exists(failedFile)) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Files.readAllLines(failedFile, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Mark every line up to {@code endOffset} as done and persist the journal.
+     */
+    void commit(long endOffset, long lineNumber, int processed, int success, int failed) throws IOException {
+        this.committedOffset = endOffset;
+        this.committedLines = lineNumber;
+        this.processed = processed;
+        this.success = success;
+        this.failed = failed;
+
+        Properties props = new Properties();
+        props.setProperty("fingerprint", fingerprint);
+        props.setProperty("account", accountKey);
+        props.setProperty("source", sourcePath);
+        props.setProperty("committed.offset", Long.toString(committedOffset));
+        props.setProperty("committed.lines", Long.toString(committedLines));
+        props.setProperty("processed", Integer.toString(processed));
+        props.setProperty("success", Integer.toString(success));
+        props.setProperty("failed", Integer.toString(failed));
+
+        Path tmp = journalFile.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "KeeNotes import journal");
+        }
+        Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Import finished: forget the journal.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(journalFile);
+            Files.deleteIfExists(failedFile);
+        } catch (IOException e) {
+            logger.warning("Failed to delete import journal: " + e.getMessage());
+        }
+    }
+}
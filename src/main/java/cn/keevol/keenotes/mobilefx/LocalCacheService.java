@@ -11,28 +11,53 @@ import java.nio.file.Path;
 import java.sql.*;
 import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * 本地缓存服务，管理客户端的SQLite数据库
  * - 存储从服务器同步的笔记（已解密内容，用于搜索）
+ *   懒解密模式下同步只写 encrypted_content（is_decrypted = 0），读取时按需解密，
+ *   空闲时后台回填明文，回填完成后搜索才能覆盖这些笔记
  * - 存储同步状态（last_sync_id）
  * <p>
  * 平台支持：
  * - Desktop 和 Android 都使用 SQLite JDBC (org.sqlite.JDBC)
  * - Android 需要包含 ARM64 原生库
  */
+// dbLock 以 try (TimedLock.Hold ignored = dbLock.acquire()) 的形式使用，Hold 在块内从不引用
+@SuppressWarnings("try")
 public class LocalCacheService {
     private static final Logger logger = AppLogger.getLogger(LocalCacheService.class);
     private static final String DB_NAME = "keenotes_cache.db";
+    // 懒解密的行 content 为空串，此时带出 encrypted_content 供按需解密
+    private static final String NOTE_COLUMNS = "id, content, channel, created_at, "
+            + "CASE WHEN is_decrypted = 0 THEN encrypted_content END AS encrypted_content, is_decrypted";
+    // 用 UPSERT 而不是 INSERT OR REPLACE：REPLACE 的隐式删除不触发 DELETE 触发器，会让 notes_fts 残留旧词条
+    private static final String UPSERT_NOTE_SUFFIX = " ON CONFLICT(id) DO UPDATE SET content = excluded.content, "
+            + "channel = excluded.channel, created_at = excluded.created_at, "
+            + "encrypted_content = excluded.encrypted_content, is_decrypted = excluded.is_decrypted, "
+            + "month_day = excluded.month_day, local_year = excluded.local_year";
     private static final DateTimeFormatter DB_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter MONTH_DAY_FORMATTER = DateTimeFormatter.ofPattern("MM-dd");
+    // 往年今日只回看到这一年（与原先逐年展开查询的下界一致）
+    private static final int ON_THIS_DAY_MIN_YEAR = 2000;
     private static LocalCacheService instance;
     private String dbPathString;
     private Connection connection;
@@ -40,19 +65,84 @@ public class LocalCacheService {
     private volatile boolean initialized = false;
     private volatile boolean closed = false;
 
-    // 所有 JDBC 操作的同步锁 — Connection 不是线程安全的，
-    // 重连期间 cryptoExecutor 写库和 UI reload 线程读库会并发访问同一个 Connection
-    private final Object dbLock = new Object();
+    // 写连接（connection）的锁 — Connection 不是线程安全的，所有写操作和 schema/重连都在锁内进行；
+    // 记录等待/持有时间，见 buildDiagnosticsSnapshot
+    private final TimedLock dbLock = new TimedLock("dbWrite");
+
+    // 只读连接池：WAL 模式下读不等待写事务，UI 查询不会排在同步批量写入之后。
+    // 池不可用（打开失败）时读操作退回写连接
+    private static final int READ_POOL_SIZE = 3;
+    private static final long READ_BORROW_TIMEOUT_MS = 2000;
+    private volatile ReadConnectionPool readPool;
 
     // 用于追踪初始化步骤
     private volatile String initStep = "not started";
 
+    // 懒解密：已解密内容 LRU（按字符数限容）+ 空闲时回填明文 / 重建索引的后台线程
+    private static final long DECRYPTED_CACHE_MAX_CHARS = 4L * 1024 * 1024;
+    private static final int BACKFILL_CHUNK_SIZE = 50;
+    private static final long BACKFILL_IDLE_MS = 2000;
+    private final DecryptedContentCache decryptedContentCache = new DecryptedContentCache(DECRYPTED_CACHE_MAX_CHARS);
+    private final ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "LocalCache-Maintenance");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private final AtomicBoolean decryptBackfillScheduled = new AtomicBoolean(false);
+    private volatile long lastNoteWriteMillis = 0;
+
+    // 计数统计（cache_stats / note_day_counts，由触发器维护，读取为 O(1) 主键查询）
+    private static final String STATS_VERSION = "1";
+    private static final String STAT_NOTES = "notes";
+    private static final String STAT_PENDING = "pending";
+
+    // 本地优先导入的临时 id 从 -2 往下分配；-1 留给发送中的乐观卡片（MainContentArea），两者不会互相覆盖
+    static final long FIRST_LOCAL_IMPORT_ID = -2;
+
+    // FTS5 全文索引（notes_fts，外部内容表 = notes_cache，由触发器维护）
+    private static final String FTS_VERSION = "1";
+    private volatile boolean ftsAvailable = false;
+    private volatile boolean ftsReady = false;
+    // CJK 子串检索：trigram 分词的 notes_trgm，支持索引加速的 LIKE（需要 SQLite 3.34+）
+    private static final String TRIGRAM_VERSION = "1";
+    private static final int TRIGRAM_MIN_QUERY_CHARS = 3;
+    // 候选行超过该值说明子串很常见，直接按 created_at 顺序 LIKE 扫描更快（很快就能凑满 LIMIT）
+    private static final int TRIGRAM_MAX_CANDIDATES = 2000;
+    private volatile boolean trigramAvailable = false;
+    private volatile boolean trigramReady = false;
+
     // Reactive property for note count
     private final IntegerProperty noteCountProperty = new SimpleIntegerProperty(0);
 
     // Data change listeners
     private final List<NoteChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
+    // 插入 / 计数变化按 FX 脉冲合并成一个 NoteChangeEvent 分发
+    private final NoteChangeBus changeBus = new NoteChangeBus(changeListeners, noteCountProperty::set);
+
+    // buildDiagnosticsSnapshot 的附加段落（同步指标等），按注册顺序输出
+    private final List<DiagnosticsContributor> diagnosticsContributors = new CopyOnWriteArrayList<>();
+
+    /**
+     * One coalesced change delta, dispatched at most once per FX pulse.
+     *
+     * @param inserted   notes written since the previous event, in write order, one entry per id
+     * @param reload     data changed in bulk (sync round applied); reload instead of applying {@code inserted}
+     * @param noteCount  total cached notes after the change
+     * @param countDelta change of {@code noteCount} since the previous dispatch
+     */
+    public record NoteChangeEvent(List<NoteData> inserted, boolean reload, int noteCount, int countDelta) {
+
+        public List<Long> ids() {
+            List<Long> ids = new ArrayList<>(inserted.size());
+            for (NoteData note : inserted) {
+                ids.add(note.id);
+            }
+            return ids;
+        }
+    }
+
     /**
      * Listener interface for note data changes
      */
@@ -63,9 +153,23 @@ public class LocalCacheService {
         void onNoteInserted(NoteData note);
 
         /**
-         * Called when multiple notes are inserted (batch sync)
+         * Called when multiple notes are inserted (batch sync); an empty list means "reload"
          */
         void onNotesInserted(List<NoteData> notes);
+
+        /**
+         * Coalesced delta on the JavaFX thread. The default maps it onto the per-kind callbacks,
+         * so each listener still sees one call per pulse.
+         */
+        default void onNotesChanged(NoteChangeEvent event) {
+            if (event.reload()) {
+                onNotesInserted(java.util.Collections.emptyList());
+            } else if (event.inserted().size() == 1) {
+                onNoteInserted(event.inserted().get(0));
+            } else {
+                onNotesInserted(event.inserted());
+            }
+        }
     }
 
     /**
@@ -82,39 +186,13 @@ public class LocalCacheService {
         changeListeners.remove(listener);
     }
 
-    /**
-     * Notify listeners of single note insertion
-     */
-    private void notifyNoteInserted(NoteData note) {
-        for (NoteChangeListener listener : changeListeners) {
-            try {
-                listener.onNoteInserted(note);
-            } catch (Exception e) {
-                // Ignore listener errors
-            }
-        }
-    }
-
-    /**
-     * Notify listeners of batch note insertion
-     */
-    private void notifyNotesInserted(List<NoteData> notes) {
-        for (NoteChangeListener listener : changeListeners) {
-            try {
-                listener.onNotesInserted(notes);
-            } catch (Exception e) {
-                // Ignore listener errors
-            }
-        }
-    }
-
     /**
      * Dispatch a single batch-change notification on the JavaFX thread.
      * Used after a reconnect sync has fully drained to avoid one UI reload per batch.
      */
     public void notifyBatchSyncApplied() {
         refreshNoteCount();
-        Platform.runLater(() -> notifyNotesInserted(java.util.Collections.emptyList()));
+        changeBus.reload();
     }
 
     private LocalCacheService() {
@@ -122,6 +200,13 @@ public class LocalCacheService {
         this.dbPathString = resolveDbPath();
     }
 
+    /**
+     * SQLite 数据库文件路径；同目录下还放派生密钥缓存等本地文件
+     */
+    String getDbPath() {
+        return dbPathString;
+    }
+
     public IntegerProperty noteCountProperty() {
         return noteCountProperty;
     }
@@ -143,6 +228,10 @@ public class LocalCacheService {
             initialized = true;
             // Initialize note count property
             refreshNoteCount();
+            // 上次退出前未回填完的懒解密笔记
+            scheduleDecryptBackfill(0);
+            // 老库首次启用 FTS：后台一次性建索引，完成前搜索走 LIKE
+            scheduleFtsRebuildIfNeeded();
         }
     }
 
@@ -164,6 +253,19 @@ public class LocalCacheService {
         ensureConnectionHealthy();
     }
 
+    /**
+     * 读路径不做写连接健康检查：那需要拿 dbLock，会让读重新排到写事务后面
+     */
+    private void ensureReadInitialized() {
+        if (readPool == null || !initialized) {
+            ensureInitialized();
+            return;
+        }
+        if (closed) {
+            throw new IllegalStateException("LocalCacheService is closed");
+        }
+    }
+
     private String resolveDbPath() {
         try {
             String userHome = System.getProperty("user.home");
@@ -215,6 +317,10 @@ public class LocalCacheService {
             // 创建表
             initStep = "creating tables";
             ensureSchema(connection);
+
+            // 只读连接必须在建表之后打开
+            initStep = "opening read connections";
+            openReadPool(jdbcUrl);
             initStep = "completed";
             initLog.append("Database init completed OK");
 
@@ -225,6 +331,54 @@ public class LocalCacheService {
         }
     }
 
+    private void openReadPool(String jdbcUrl) {
+        try {
+            readPool = new ReadConnectionPool(jdbcUrl, READ_POOL_SIZE);
+            logger.info("Opened " + READ_POOL_SIZE + " read-only SQLite connections");
+        } catch (SQLException e) {
+            readPool = null;
+            logger.warning("Read-only connection pool unavailable, reads share the writer connection: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * 读连接租约：优先从只读池借；池不可用，或当前线程已持有写锁（需要看到自己未提交的写入）时，
+     * 退回写连接并持有 dbLock
+     */
+    private final class ReadLease implements AutoCloseable {
+        final Connection connection;
+        private final ReadConnectionPool.Lease poolLease;
+        private final TimedLock.Hold writerHold;
+
+        private ReadLease(Connection connection, ReadConnectionPool.Lease poolLease, TimedLock.Hold writerHold) {
+            this.connection = connection;
+            this.poolLease = poolLease;
+            this.writerHold = writerHold;
+        }
+
+        @Override
+        public void close() {
+            if (poolLease != null) {
+                poolLease.close();
+            } else {
+                writerHold.close();
+            }
+        }
+    }
+
+    private ReadLease leaseRead() {
+        ReadConnectionPool pool = readPool;
+        if (pool != null && !dbLock.isHeldByCurrentThread()) {
+            ReadConnectionPool.Lease lease = pool.borrow(READ_BORROW_TIMEOUT_MS);
+            if (lease != null) {
+                return new ReadLease(lease.connection, lease, null);
+            }
+        }
+        TimedLock.Hold hold = dbLock.acquire();
+        return new ReadLease(connection, null, hold);
+    }
+
     private void applyPragmas(Connection conn) throws SQLException {
         try (Statement pragmaStmt = conn.createStatement()) {
             pragmaStmt.execute("PRAGMA journal_mode=WAL");
@@ -249,7 +403,15 @@ public class LocalCacheService {
                             ")");
 
             stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_cache_created_at ON notes_cache(created_at)");
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_cache_content ON notes_cache(content)");
+            // 前导通配 LIKE 用不上该索引，只会增加写入成本；搜索改走 notes_fts
+            stmt.executeUpdate("DROP INDEX IF EXISTS idx_cache_content");
+            ensureColumnExists(stmt, "notes_cache", "is_decrypted", "INTEGER DEFAULT 1");
+            // On This Day：created_at 换算到本地时区后的 MM-dd 和年份，写入时计算
+            ensureColumnExists(stmt, "notes_cache", "month_day", "TEXT");
+            ensureColumnExists(stmt, "notes_cache", "local_year", "INTEGER");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_cache_month_day ON notes_cache(month_day, created_at)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_cache_pending_decrypt ON notes_cache(created_at) "
+                    + "WHERE is_decrypted = 0");
 
             stmt.executeUpdate(
                     "CREATE TABLE IF NOT EXISTS sync_state (" +
@@ -272,6 +434,280 @@ public class LocalCacheService {
                             ")");
             ensureColumnExists(stmt, "pending_notes", "encrypted_content", "TEXT");
             ensureColumnExists(stmt, "pending_notes", "request_id", "TEXT");
+            // 本地优先导入：指向 notes_cache 中的临时负 id 行，上传成功后换成服务器 id
+            ensureColumnExists(stmt, "pending_notes", "local_note_id", "INTEGER");
+            // 服务器拒收（非网络原因）的行记下原因，自动重试跳过它们，不再堵住后面的笔记
+            ensureColumnExists(stmt, "pending_notes", "failed_reason", "TEXT");
+            // 只索引本地临时行（id < 0），同步回显时按上传的密文找到并替换它们
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_cache_local_echo ON notes_cache(encrypted_content) "
+                    + "WHERE id < 0");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS cache_meta (" +
+                            "  key TEXT PRIMARY KEY, " +
+                            "  value TEXT" +
+                            ")");
+        }
+        migrateLocalDateColumns(conn);
+        ensureStatsSchema(conn);
+        ensureFtsSchema(conn);
+    }
+
+    /**
+     * 笔记数 / 待发送数存在 cache_stats，按 UTC 日期的笔记数存在 note_day_counts，都由触发器在同一事务内维护，
+     * 计数读取不再 COUNT(*) 全表。UPSERT 命中已有行走 UPDATE 路径，不触发 INSERT 触发器，计数保持不变。
+     * 启动时与实际行数对账一次（只在首次建表或计数漂移时全量重算）。
+     */
+    private void ensureStatsSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS cache_stats (" +
+                            "  key TEXT PRIMARY KEY, " +
+                            "  value INTEGER NOT NULL DEFAULT 0" +
+                            ")");
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS note_day_counts (" +
+                            "  day TEXT PRIMARY KEY, " +
+                            "  cnt INTEGER NOT NULL DEFAULT 0" +
+                            ")");
+            stmt.executeUpdate("INSERT OR IGNORE INTO cache_stats (key, value) VALUES ('" + STAT_NOTES + "', 0)");
+            stmt.executeUpdate("INSERT OR IGNORE INTO cache_stats (key, value) VALUES ('" + STAT_PENDING + "', 0)");
+
+            String day = "COALESCE(substr(%s.created_at, 1, 10), '')";
+            String newDay = String.format(day, "new");
+            String oldDay = String.format(day, "old");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_stats_ai AFTER INSERT ON notes_cache BEGIN "
+                    + "UPDATE cache_stats SET value = value + 1 WHERE key = '" + STAT_NOTES + "'; "
+                    + "INSERT INTO note_day_counts (day, cnt) VALUES (" + newDay + ", 1) "
+                    + "ON CONFLICT(day) DO UPDATE SET cnt = cnt + 1; END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_stats_ad AFTER DELETE ON notes_cache BEGIN "
+                    + "UPDATE cache_stats SET value = value - 1 WHERE key = '" + STAT_NOTES + "'; "
+                    + "UPDATE note_day_counts SET cnt = cnt - 1 WHERE day = " + oldDay + "; END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_stats_au AFTER UPDATE OF created_at ON notes_cache "
+                    + "WHEN " + oldDay + " <> " + newDay + " BEGIN "
+                    + "UPDATE note_day_counts SET cnt = cnt - 1 WHERE day = " + oldDay + "; "
+                    + "INSERT INTO note_day_counts (day, cnt) VALUES (" + newDay + ", 1) "
+                    + "ON CONFLICT(day) DO UPDATE SET cnt = cnt + 1; END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS pending_stats_ai AFTER INSERT ON pending_notes BEGIN "
+                    + "UPDATE cache_stats SET value = value + 1 WHERE key = '" + STAT_PENDING + "'; END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS pending_stats_ad AFTER DELETE ON pending_notes BEGIN "
+                    + "UPDATE cache_stats SET value = value - 1 WHERE key = '" + STAT_PENDING + "'; END");
+        }
+
+        if (STATS_VERSION.equals(readMeta(conn, "stats_version"))
+                && readStat(conn, STAT_NOTES) == countRows(conn, "notes_cache")
+                && readStat(conn, STAT_PENDING) == countRows(conn, "pending_notes")) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM note_day_counts");
+            stmt.executeUpdate("INSERT INTO note_day_counts (day, cnt) "
+                    + "SELECT COALESCE(substr(created_at, 1, 10), ''), COUNT(*) FROM notes_cache "
+                    + "GROUP BY COALESCE(substr(created_at, 1, 10), '')");
+            stmt.executeUpdate("UPDATE cache_stats SET value = (SELECT COUNT(*) FROM notes_cache) "
+                    + "WHERE key = '" + STAT_NOTES + "'");
+            stmt.executeUpdate("UPDATE cache_stats SET value = (SELECT COUNT(*) FROM pending_notes) "
+                    + "WHERE key = '" + STAT_PENDING + "'");
+            writeMeta(conn, "stats_version", STATS_VERSION);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        logger.info("Reconciled note stats in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static long readStat(Connection conn, String key) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT value FROM cache_stats WHERE key = ?")) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    private static long countRows(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * 回填 month_day / local_year。本地日期取决于时区，所以按时区记录在 cache_meta.month_day_zone，
+     * 老库首次升级或系统时区变化后重算全部行（只改这两列，不触发 FTS 触发器）
+     */
+    private void migrateLocalDateColumns(Connection conn) throws SQLException {
+        ZoneId zoneId = ZoneId.systemDefault();
+        if (zoneId.getId().equals(readMeta(conn, "month_day_zone"))) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Object[]> updates = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, created_at FROM notes_cache")) {
+            while (rs.next()) {
+                LocalDate localDate = toLocalDate(rs.getString("created_at"), zoneId);
+                updates.add(new Object[]{
+                        localDate != null ? localDate.format(MONTH_DAY_FORMATTER) : null,
+                        localDate != null ? localDate.getYear() : null,
+                        rs.getLong("id")
+                });
+            }
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE notes_cache SET month_day = ?, local_year = ? WHERE id = ?")) {
+            for (Object[] update : updates) {
+                pstmt.setObject(1, update[0]);
+                pstmt.setObject(2, update[1]);
+                pstmt.setObject(3, update[2]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            writeMeta(conn, "month_day_zone", zoneId.getId());
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        logger.info("Backfilled month_day for " + updates.size() + " notes (zone=" + zoneId.getId() + ") in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * UTC 存储格式的 created_at 对应的本地日期；无法解析时返回 null
+     */
+    private static LocalDate toLocalDate(String createdAtUtc, ZoneId zoneId) {
+        if (createdAtUtc == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(createdAtUtc, DB_TIMESTAMP_FORMATTER)
+                    .atOffset(ZoneOffset.UTC)
+                    .atZoneSameInstant(zoneId)
+                    .toLocalDate();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * notes_fts 只存倒排索引（content='notes_cache'），写入由 notes_cache 上的触发器同步。
+     * 索引是否已覆盖历史数据记录在 cache_meta.fts_version，未覆盖时由 {@link #scheduleFtsRebuildIfNeeded} 重建。
+     * 当前 SQLite 不支持 FTS5 时静默退回 LIKE 搜索。
+     */
+    private void ensureFtsSchema(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts5("
+                    + "content, content='notes_cache', content_rowid='id', tokenize='unicode61')");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_fts_ai AFTER INSERT ON notes_cache BEGIN "
+                    + "INSERT INTO notes_fts(rowid, content) VALUES (new.id, new.content); END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_fts_ad AFTER DELETE ON notes_cache BEGIN "
+                    + "INSERT INTO notes_fts(notes_fts, rowid, content) VALUES ('delete', old.id, old.content); END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_fts_au AFTER UPDATE OF content ON notes_cache BEGIN "
+                    + "INSERT INTO notes_fts(notes_fts, rowid, content) VALUES ('delete', old.id, old.content); "
+                    + "INSERT INTO notes_fts(rowid, content) VALUES (new.id, new.content); END");
+            ftsAvailable = true;
+            ftsReady = FTS_VERSION.equals(readMeta(conn, "fts_version"));
+        } catch (SQLException e) {
+            logger.warning("FTS5 unavailable, search falls back to LIKE: " + e.getMessage());
+            ftsAvailable = false;
+            ftsReady = false;
+        }
+
+        // 中文没有空格分词，unicode61 无法切词；trigram 表让 content LIKE '%子串%' 走索引，结果与直接 LIKE 一致
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS notes_trgm USING fts5("
+                    + "content, content='notes_cache', content_rowid='id', tokenize='trigram')");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_trgm_ai AFTER INSERT ON notes_cache BEGIN "
+                    + "INSERT INTO notes_trgm(rowid, content) VALUES (new.id, new.content); END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_trgm_ad AFTER DELETE ON notes_cache BEGIN "
+                    + "INSERT INTO notes_trgm(notes_trgm, rowid, content) VALUES ('delete', old.id, old.content); END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS notes_trgm_au AFTER UPDATE OF content ON notes_cache BEGIN "
+                    + "INSERT INTO notes_trgm(notes_trgm, rowid, content) VALUES ('delete', old.id, old.content); "
+                    + "INSERT INTO notes_trgm(rowid, content) VALUES (new.id, new.content); END");
+            trigramAvailable = true;
+            trigramReady = TRIGRAM_VERSION.equals(readMeta(conn, "trgm_version"));
+        } catch (SQLException e) {
+            logger.warning("FTS5 trigram tokenizer unavailable, CJK search falls back to LIKE: " + e.getMessage());
+            trigramAvailable = false;
+            trigramReady = false;
+        }
+    }
+
+    private String readMeta(Connection conn, String key) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT value FROM cache_meta WHERE key = ?")) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private void writeMeta(Connection conn, String key, String value) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO cache_meta (key, value) VALUES (?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value")) {
+            pstmt.setString(1, key);
+            pstmt.setString(2, value);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void scheduleFtsRebuildIfNeeded() {
+        boolean ftsPending = ftsAvailable && !ftsReady;
+        boolean trigramPending = trigramAvailable && !trigramReady;
+        if ((!ftsPending && !trigramPending) || closed) {
+            return;
+        }
+        try {
+            maintenanceExecutor.execute(this::rebuildFtsIndex);
+        } catch (RejectedExecutionException e) {
+            // closing
+        }
+    }
+
+    /**
+     * 一次性全量重建：'rebuild' 直接从 notes_cache 重读全部内容，与触发器写入的状态无关
+     */
+    private void rebuildFtsIndex() {
+        if (closed) {
+            return;
+        }
+        if (ftsAvailable && !ftsReady && rebuildSearchIndex("notes_fts", "fts_version", FTS_VERSION)) {
+            ftsReady = true;
+        }
+        if (trigramAvailable && !trigramReady && rebuildSearchIndex("notes_trgm", "trgm_version", TRIGRAM_VERSION)) {
+            trigramReady = true;
+        }
+    }
+
+    private boolean rebuildSearchIndex(String table, String metaKey, String version) {
+        try {
+            ensureInitialized();
+            long start = System.currentTimeMillis();
+            try (TimedLock.Hold ignored = dbLock.acquire()) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO " + table + "(" + table + ") VALUES ('rebuild')");
+                }
+                writeMeta(connection, metaKey, version);
+            }
+            logger.info(table + " index rebuilt in " + (System.currentTimeMillis() - start) + "ms");
+            return true;
+        } catch (Exception e) {
+            logger.warning(table + " index rebuild failed, search stays on LIKE: " + e.getMessage());
+            return false;
         }
     }
 
@@ -295,7 +731,7 @@ public class LocalCacheService {
         if (closed) {
             return;
         }
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try {
                 if (isConnectionHealthy(connection)) {
                     return;
@@ -355,9 +791,119 @@ public class LocalCacheService {
         ensureInitialized();
         if (notes.isEmpty()) return;
 
-        String sql = "INSERT OR REPLACE INTO notes_cache (id, content, channel, created_at, encrypted_content) VALUES (?, ?, ?, ?, ?)";
+        writeNotesTransaction(notes, -1L);
+        afterNotesWritten(notes);
+
+        if (notifyListeners) {
+            // Note count + insertion delta, merged into the next FX pulse
+            refreshNoteCount();
+            changeBus.inserted(notes);
+        }
+    }
+
+    /**
+     * Write one sync batch and, when {@code checkpointId >= 0}, advance the sync cursor to it in the same
+     * transaction, so an interrupted sync resumes after the last durably written batch.
+     * Listeners are not notified; the caller emits one notification when the round is drained.
+     */
+    public void applySyncBatch(List<NoteData> notes, long checkpointId) throws SQLException {
+        ensureInitialized();
+        if (notes.isEmpty() && checkpointId < 0) return;
+
+        writeNotesTransaction(notes, checkpointId);
+        afterNotesWritten(notes);
+    }
+
+    /**
+     * Anti-entropy: per-bucket hashes of the synced notes with 0 &lt;= id &lt;= {@code maxId} over their
+     * stored ciphertext, see {@link SyncRangeHash}.
+     */
+    public List<SyncRangeHash.Bucket> computeRangeHashes(int bucketSize, long maxId) {
+        ensureReadInitialized();
+        SyncRangeHash.Builder builder = new SyncRangeHash.Builder(bucketSize);
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(
+                    "SELECT id, encrypted_content FROM notes_cache WHERE id >= 0 AND id <= ? ORDER BY id")) {
+                pstmt.setLong(1, maxId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        builder.add(rs.getLong(1), rs.getString(2));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to compute range hashes", e);
+            }
+        }
+        return builder.finish();
+    }
 
-        synchronized (dbLock) {
+    /**
+     * Make the id range [startId, endIdExclusive) match the server: rows whose id is not in
+     * {@code serverIds} are deleted and {@code notes} are upserted, in one transaction.
+     *
+     * @return number of local rows deleted
+     */
+    public int replaceRange(long startId, long endIdExclusive, Set<Long> serverIds, List<NoteData> notes)
+            throws SQLException {
+        ensureInitialized();
+        List<Long> stale = new ArrayList<>();
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT id FROM notes_cache WHERE id >= ? AND id < ?")) {
+                pstmt.setLong(1, startId);
+                pstmt.setLong(2, endIdExclusive);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        if (!serverIds.contains(id)) {
+                            stale.add(id);
+                        }
+                    }
+                }
+            }
+            // 仍在同一把写锁内：查询与删除之间不会插入别的写入
+            writeNotesTransaction(stale, notes, -1L);
+        }
+        for (Long id : stale) {
+            decryptedContentCache.remove(id);
+        }
+        afterNotesWritten(notes);
+        if (!stale.isEmpty()) {
+            refreshNoteCount();
+        }
+        return stale.size();
+    }
+
+    /**
+     * Group commit for realtime pushes: upsert {@code notes} and advance the sync cursor in one transaction
+     * (one WAL commit instead of one per statement), then merge them into the next change event.
+     * A pulse that carries a single note still goes through {@code onNoteInserted} so the UI can match its optimistic card.
+     *
+     * @param lastSyncId new sync cursor, or a negative value to leave sync_state untouched
+     */
+    public void applyRealtimeNotes(List<NoteData> notes, long lastSyncId) throws SQLException {
+        ensureInitialized();
+        if (notes.isEmpty()) return;
+
+        writeNotesTransaction(notes, lastSyncId);
+        afterNotesWritten(notes);
+
+        refreshNoteCount();
+        changeBus.inserted(notes);
+    }
+
+    private void writeNotesTransaction(List<NoteData> notes, long lastSyncId) throws SQLException {
+        writeNotesTransaction(List.of(), notes, lastSyncId);
+    }
+
+    /**
+     * @param deleteIds rows removed in the same transaction before the upserts
+     */
+    private void writeNotesTransaction(List<Long> deleteIds, List<NoteData> notes, long lastSyncId) throws SQLException {
+        String sql = "INSERT INTO notes_cache (id, content, channel, created_at, encrypted_content, is_decrypted, month_day, local_year) VALUES (?, ?, ?, ?, ?, ?, ?, ?)" + UPSERT_NOTE_SUFFIX;
+        List<Long> echoed = List.of();
+
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             boolean autoCommitChanged = false;
             SQLException failure = null;
 
@@ -365,16 +911,33 @@ public class LocalCacheService {
                 connection.setAutoCommit(false);
                 autoCommitChanged = true;
 
+                if (!deleteIds.isEmpty()) {
+                    try (PreparedStatement delete = connection.prepareStatement("DELETE FROM notes_cache WHERE id = ?")) {
+                        for (long id : deleteIds) {
+                            delete.setLong(1, id);
+                            delete.addBatch();
+                        }
+                        delete.executeBatch();
+                    }
+                }
+                echoed = dropLocalEchoes(notes);
+
                 for (NoteData note : notes) {
-                    pstmt.setLong(1, note.id);
-                    pstmt.setString(2, note.content);
-                    pstmt.setString(3, note.channel);
-                    pstmt.setString(4, note.createdAt);
-                    pstmt.setString(5, note.encryptedContent);
+                    bindNoteInsert(pstmt, note);
                     pstmt.addBatch();
                 }
 
-                pstmt.executeBatch();
+                if (!notes.isEmpty()) {
+                    pstmt.executeBatch();
+                }
+                if (lastSyncId >= 0) {
+                    // 游标只前进：检查点与实时推送可能交错提交
+                    try (PreparedStatement cursor = connection.prepareStatement(
+                            "UPDATE sync_state SET last_sync_id = MAX(last_sync_id, ?), last_sync_time = datetime('now') WHERE id = 1")) {
+                        cursor.setLong(1, lastSyncId);
+                        cursor.executeUpdate();
+                    }
+                }
                 connection.commit();
             } catch (SQLException e) {
                 failure = e;
@@ -398,140 +961,491 @@ public class LocalCacheService {
                 }
             }
         }
+        if (!echoed.isEmpty()) {
+            for (Long id : echoed) {
+                decryptedContentCache.remove(id);
+            }
+            // 列表里还挂着临时 id 的卡片，整体重载
+            changeBus.reload();
+        }
+    }
 
-        if (notifyListeners) {
-            // Update note count property
-            refreshNoteCount();
-            // Notify listeners of batch insertion (on JavaFX thread)
-            Platform.runLater(() -> notifyNotesInserted(notes));
+    /**
+     * Delete the local-import rows (negative ids) whose uploaded ciphertext comes back in {@code notes}:
+     * the server copy replaces them. Runs inside the caller's transaction.
+     *
+     * @return ids of the deleted local rows
+     */
+    private List<Long> dropLocalEchoes(List<NoteData> notes) throws SQLException {
+        if (notes.isEmpty()) {
+            return List.of();
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM notes_cache WHERE id < 0 LIMIT 1")) {
+            if (!rs.next()) {
+                return List.of();
+            }
+        }
+        List<Long> echoed = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id FROM notes_cache WHERE id < 0 AND encrypted_content = ?")) {
+            for (NoteData note : notes) {
+                if (note.encryptedContent == null) {
+                    continue;
+                }
+                select.setString(1, note.encryptedContent);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        echoed.add(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        if (!echoed.isEmpty()) {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM notes_cache WHERE id = ?")) {
+                for (long id : echoed) {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
         }
+        return echoed;
     }
 
     public void insertNote(NoteData note) throws SQLException {
         ensureInitialized();
-        String sql = "INSERT OR REPLACE INTO notes_cache (id, content, channel, created_at, encrypted_content) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO notes_cache (id, content, channel, created_at, encrypted_content, is_decrypted, month_day, local_year) VALUES (?, ?, ?, ?, ?, ?, ?, ?)" + UPSERT_NOTE_SUFFIX;
 
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setLong(1, note.id);
-                pstmt.setString(2, note.content);
-                pstmt.setString(3, note.channel);
-                pstmt.setString(4, note.createdAt);
-                pstmt.setString(5, note.encryptedContent);
+                bindNoteInsert(pstmt, note);
                 pstmt.executeUpdate();
             }
         }
+        afterNotesWritten(List.of(note));
 
-        // Update note count property
+        // Note count + insertion delta, merged into the next FX pulse
         refreshNoteCount();
+        changeBus.inserted(List.of(note));
+    }
 
-        // Notify listeners of single note insertion (on JavaFX thread)
-        Platform.runLater(() -> notifyNoteInserted(note));
+    /**
+     * content 为 null 表示懒解密：明文列先存空串，is_decrypted = 0，读取或回填时再解密
+     */
+    private void bindNoteInsert(PreparedStatement pstmt, NoteData note) throws SQLException {
+        boolean decrypted = note.content != null;
+        pstmt.setLong(1, note.id);
+        pstmt.setString(2, decrypted ? note.content : "");
+        pstmt.setString(3, note.channel);
+        pstmt.setString(4, note.createdAt);
+        pstmt.setString(5, note.encryptedContent);
+        pstmt.setInt(6, decrypted ? 1 : 0);
+        LocalDate localDate = toLocalDate(note.createdAt, ZoneId.systemDefault());
+        pstmt.setString(7, localDate != null ? localDate.format(MONTH_DAY_FORMATTER) : null);
+        pstmt.setObject(8, localDate != null ? localDate.getYear() : null);
+    }
+
+    private void afterNotesWritten(List<NoteData> notes) {
+        lastNoteWriteMillis = System.currentTimeMillis();
+        boolean hasEncryptedOnly = false;
+        for (NoteData note : notes) {
+            // 同 id 被覆盖写入时旧明文作废
+            decryptedContentCache.remove(note.id);
+            hasEncryptedOnly |= note.content == null;
+        }
+        if (hasEncryptedOnly) {
+            scheduleDecryptBackfill(BACKFILL_IDLE_MS);
+        }
+    }
+
+    /**
+     * Platform.runLater, or run inline when no JavaFX toolkit is running (headless tools such as the
+     * sync benchmark); in the app the toolkit is always up, so listeners still run on the FX thread.
+     */
+    private static void runOnFxThread(Runnable action) {
+        try {
+            Platform.runLater(action);
+        } catch (IllegalStateException toolkitNotRunning) {
+            action.run();
+        }
     }
 
     /**
-     * Refresh note count property from database
+     * Refresh note count property from cache_stats (O(1), no table scan)
      */
     private void refreshNoteCount() {
         try {
-            int count = getLocalNoteCount();
-            javafx.application.Platform.runLater(() -> noteCountProperty.set(count));
+            changeBus.noteCount(getLocalNoteCount());
         } catch (Exception e) {
             // Ignore errors
         }
     }
 
-    public List<NoteData> searchNotes(String query) {
+    private static NoteData readNoteRow(ResultSet rs) throws SQLException {
+        int flag = rs.getInt("is_decrypted");
+        boolean decrypted = flag != 0 || rs.wasNull();
+        return new NoteData(
+                rs.getLong("id"),
+                decrypted ? rs.getString("content") : null,
+                rs.getString("channel"),
+                rs.getString("created_at"),
+                decrypted ? null : rs.getString("encrypted_content")
+        );
+    }
+
+    // ==================== 懒解密 ====================
+
+    /**
+     * 把查询结果里尚未解密的行解密后返回（在 dbLock 之外调用，解密可能触发 Argon2）
+     */
+    private List<NoteData> materializeContent(List<NoteData> notes) {
+        boolean hasEncryptedOnly = false;
+        for (NoteData note : notes) {
+            if (note.content == null) {
+                hasEncryptedOnly = true;
+                break;
+            }
+        }
+        if (!hasEncryptedOnly) {
+            return notes;
+        }
+
+        List<NoteData> resolved = new ArrayList<>(notes.size());
+        for (NoteData note : notes) {
+            resolved.add(note.content != null ? note : new NoteData(
+                    note.id, decryptStoredContent(note), note.channel, note.createdAt, note.encryptedContent));
+        }
+        scheduleDecryptBackfill(BACKFILL_IDLE_MS);
+        return resolved;
+    }
+
+    private String decryptStoredContent(NoteData note) {
+        String cached = decryptedContentCache.get(note.id);
+        if (cached != null) {
+            return cached;
+        }
+        String content;
+        try {
+            content = cryptoService.decrypt(note.encryptedContent);
+        } catch (Exception e) {
+            // 与同步路径一致：解不开就保留密文
+            logger.warning("Failed to decrypt note " + note.id + ": " + e.getMessage() + ", using encrypted content");
+            content = note.encryptedContent != null ? note.encryptedContent : "";
+        }
+        decryptedContentCache.put(note.id, content);
+        return content;
+    }
+
+    private void scheduleDecryptBackfill(long delayMs) {
+        if (closed || !decryptBackfillScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            maintenanceExecutor.schedule(this::runDecryptBackfill, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            decryptBackfillScheduled.set(false);
+        }
+    }
+
+    /**
+     * 空闲回填：最近有笔记写入（同步进行中）就让路；否则每轮解密一小批并写回明文，
+     * 直到没有 is_decrypted = 0 的行
+     */
+    private void runDecryptBackfill() {
+        decryptBackfillScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        long idleFor = System.currentTimeMillis() - lastNoteWriteMillis;
+        if (idleFor < BACKFILL_IDLE_MS) {
+            scheduleDecryptBackfill(BACKFILL_IDLE_MS - idleFor);
+            return;
+        }
+
+        try {
+            List<NoteData> chunk = loadEncryptedOnlyNotes(BACKFILL_CHUNK_SIZE);
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<NoteData> decrypted = new ArrayList<>(chunk.size());
+            for (NoteData note : chunk) {
+                decrypted.add(new NoteData(
+                        note.id, decryptStoredContent(note), note.channel, note.createdAt, note.encryptedContent));
+            }
+            int updated = writeBackDecryptedContent(decrypted);
+            logger.fine("Decrypt backfill wrote " + updated + " notes");
+            scheduleDecryptBackfill(0);
+        } catch (Exception e) {
+            logger.warning("Decrypt backfill failed: " + e.getMessage());
+            scheduleDecryptBackfill(BACKFILL_IDLE_MS * 15);
+        }
+    }
+
+    private List<NoteData> loadEncryptedOnlyNotes(int limit) {
+        ensureReadInitialized();
+        List<NoteData> results = new ArrayList<>();
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE is_decrypted = 0 ORDER BY created_at DESC LIMIT ?";
+
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
+                pstmt.setInt(1, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(readNoteRow(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warning("loadEncryptedOnlyNotes failed: " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 写回明文；encrypted_content 作为条件，避免覆盖回填期间被同步重写的行
+     */
+    private int writeBackDecryptedContent(List<NoteData> notes) throws SQLException {
         ensureInitialized();
+        String sql = "UPDATE notes_cache SET content = ?, is_decrypted = 1 "
+                + "WHERE id = ? AND is_decrypted = 0 AND encrypted_content = ?";
+        int updated = 0;
+
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            boolean autoCommitChanged = false;
+            SQLException failure = null;
+
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                connection.setAutoCommit(false);
+                autoCommitChanged = true;
+
+                for (NoteData note : notes) {
+                    pstmt.setString(1, note.content);
+                    pstmt.setLong(2, note.id);
+                    pstmt.setString(3, note.encryptedContent);
+                    pstmt.addBatch();
+                }
+                for (int count : pstmt.executeBatch()) {
+                    updated += Math.max(count, 0);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                failure = e;
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                if (autoCommitChanged) {
+                    try {
+                        connection.setAutoCommit(true);
+                    } catch (SQLException resetError) {
+                        if (failure != null) {
+                            failure.addSuppressed(resetError);
+                        } else {
+                            throw resetError;
+                        }
+                    }
+                }
+            }
+        }
+
+        // 已落库的明文不必再占 LRU
+        for (NoteData note : notes) {
+            decryptedContentCache.remove(note.id);
+        }
+        return updated;
+    }
+
+    public List<NoteData> searchNotes(String query) {
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
         if (query == null || query.trim().isEmpty()) {
             return results;
         }
 
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache WHERE content LIKE ? ORDER BY created_at DESC LIMIT 100";
+        String ftsQuery = ftsReady ? buildFtsMatchQuery(query) : null;
+        if (ftsQuery != null) {
+            List<NoteData> ftsResults = searchNotesFts(ftsQuery);
+            if (ftsResults != null) {
+                return materializeContent(ftsResults);
+            }
+        }
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, "%" + query + "%");
+        // 含中文等无法按词切分的查询：保持 LIKE 语义；子串较罕见时先用 trigram 索引筛出候选行
+        String trigramPhrase = useTrigramCandidates(query) ? "\"" + query.replace("\"", "\"\"") + "\"" : null;
+        String sql = trigramPhrase != null
+                ? "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE id IN "
+                + "(SELECT rowid FROM notes_trgm WHERE notes_trgm MATCH ?) AND content LIKE ? "
+                + "ORDER BY created_at DESC LIMIT 100"
+                : "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE content LIKE ? ORDER BY created_at DESC LIMIT 100";
+
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
+                if (trigramPhrase != null) {
+                    pstmt.setString(1, trigramPhrase);
+                    pstmt.setString(2, "%" + query + "%");
+                } else {
+                    pstmt.setString(1, "%" + query + "%");
+                }
                 ResultSet rs = pstmt.executeQuery();
 
                 while (rs.next()) {
-                    results.add(new NoteData(
-                            rs.getLong("id"),
-                            rs.getString("content"),
-                            rs.getString("channel"),
-                            rs.getString("created_at"),
-                            null
-                    ));
+                    results.add(readNoteRow(rs));
                 }
             } catch (SQLException e) {
                 logger.warning("searchNotes failed: " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
+    }
+
+    /**
+     * trigram 短语 MATCH 的结果是 LIKE '%q%' 的超集（前提：≥3 字符且不含 LIKE 通配符），
+     * 再叠加原 LIKE 条件即可得到与直接 LIKE 完全相同的结果。候选过多时不如直接扫描。
+     */
+    private boolean useTrigramCandidates(String query) {
+        if (!trigramReady
+                || query.codePointCount(0, query.length()) < TRIGRAM_MIN_QUERY_CHARS
+                || query.indexOf('%') >= 0 || query.indexOf('_') >= 0) {
+            return false;
+        }
+        String sql = "SELECT COUNT(*) FROM (SELECT rowid FROM notes_trgm WHERE notes_trgm MATCH ? LIMIT ?)";
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
+                pstmt.setString(1, "\"" + query.replace("\"", "\"\"") + "\"");
+                pstmt.setInt(2, TRIGRAM_MAX_CANDIDATES);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() && rs.getInt(1) < TRIGRAM_MAX_CANDIDATES;
+                }
+            } catch (SQLException e) {
+                logger.warning("Trigram candidate probe failed: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * bm25 排序的全文检索；返回 null 表示 FTS 查询失败，由调用方退回 LIKE
+     */
+    private List<NoteData> searchNotesFts(String matchQuery) {
+        List<NoteData> results = new ArrayList<>();
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM ("
+                + "SELECT rowid AS fts_id, rank AS fts_rank FROM notes_fts WHERE notes_fts MATCH ? ORDER BY rank LIMIT 100"
+                + ") f JOIN notes_cache ON notes_cache.id = f.fts_id ORDER BY f.fts_rank, created_at DESC";
+
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
+                pstmt.setString(1, matchQuery);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(readNoteRow(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warning("searchNotesFts failed: " + e.getMessage());
+                return null;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 把用户输入转成 FTS5 MATCH 表达式：按 unicode61 的分词规则切词，每个词作为前缀短语，词之间 AND。
+     * 含 CJK 字符时返回 null —— unicode61 会把整段中文当成一个词，只能走 LIKE 子串匹配。
+     */
+    static String buildFtsMatchQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < query.length(); ) {
+            int cp = query.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                return null;
+            }
+            if (Character.isLetterOrDigit(cp)) {
+                current.appendCodePoint(cp);
+            } else if (current.length() > 0) {
+                terms.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            terms.add(current.toString());
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(term.replace("\"", "\"\"")).append("\"*");
+        }
+        return match.toString();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
     }
 
     public List<NoteData> getNotesForReview(int days) {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
 
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache WHERE created_at >= datetime('now', '-' || ? || ' days') ORDER BY created_at DESC LIMIT 100";
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE created_at >= datetime('now', '-' || ? || ' days') ORDER BY created_at DESC LIMIT 100";
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 pstmt.setInt(1, days);
                 ResultSet rs = pstmt.executeQuery();
 
                 while (rs.next()) {
-                    results.add(new NoteData(
-                            rs.getLong("id"),
-                            rs.getString("content"),
-                            rs.getString("channel"),
-                            rs.getString("created_at"),
-                            null
-                    ));
+                    results.add(readNoteRow(rs));
                 }
             } catch (SQLException e) {
                 logger.warning("Review failed: " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
     }
 
     public List<NoteData> getNotesOnThisDay() {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
         QuerySpec query = buildOnThisDayQuery();
         if (query == null) {
             return results;
         }
 
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache WHERE "
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE "
                 + query.whereClause + " ORDER BY created_at DESC";
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 bindQueryArgs(pstmt, query.args);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        results.add(new NoteData(
-                                rs.getLong("id"),
-                                rs.getString("content"),
-                                rs.getString("channel"),
-                                rs.getString("created_at"),
-                                null
-                        ));
+                        results.add(readNoteRow(rs));
                     }
                 }
             } catch (SQLException e) {
                 logger.warning("getNotesOnThisDay failed: " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
     }
 
     public int getNotesOnThisDayCount() {
-        ensureInitialized();
+        ensureReadInitialized();
         QuerySpec query = buildOnThisDayQuery();
         if (query == null) {
             return 0;
@@ -539,8 +1453,8 @@ public class LocalCacheService {
 
         String sql = "SELECT COUNT(*) FROM notes_cache WHERE " + query.whereClause;
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 bindQueryArgs(pstmt, query.args);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
@@ -558,31 +1472,25 @@ public class LocalCacheService {
      * Paginated notes from the same calendar day in past years.
      */
     public List<NoteData> getNotesOnThisDayPaged(int offset, int limit) {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
         QuerySpec query = buildOnThisDayQuery();
         if (query == null) {
             return results;
         }
 
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache WHERE "
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE "
                 + query.whereClause + " ORDER BY created_at DESC LIMIT ? OFFSET ?";
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 bindQueryArgs(pstmt, query.args);
                 int argCount = query.args.size();
                 pstmt.setInt(argCount + 1, limit);
                 pstmt.setInt(argCount + 2, offset);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        results.add(new NoteData(
-                                rs.getLong("id"),
-                                rs.getString("content"),
-                                rs.getString("channel"),
-                                rs.getString("created_at"),
-                                null
-                        ));
+                        results.add(readNoteRow(rs));
                     }
                 }
             } catch (SQLException e) {
@@ -590,39 +1498,33 @@ public class LocalCacheService {
                         + ", limit=" + limit + "): " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
     }
 
     public List<NoteData> getAllNotes() {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache ORDER BY created_at DESC";
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache ORDER BY created_at DESC";
 
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
+        try (ReadLease db = leaseRead()) {
+            try (Statement stmt = db.connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
 
                 while (rs.next()) {
-                    results.add(new NoteData(
-                            rs.getLong("id"),
-                            rs.getString("content"),
-                            rs.getString("channel"),
-                            rs.getString("created_at"),
-                            null
-                    ));
+                    results.add(readNoteRow(rs));
                 }
             } catch (SQLException e) {
                 logger.warning("getAllNotes failed: " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
     }
 
     public void updateLastSyncId(long lastSyncId) throws SQLException {
         ensureInitialized();
         String sql = "UPDATE sync_state SET last_sync_id = ?, last_sync_time = datetime('now') WHERE id = 1";
 
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
                 pstmt.setLong(1, lastSyncId);
                 pstmt.executeUpdate();
@@ -631,11 +1533,11 @@ public class LocalCacheService {
     }
 
     public long getLastSyncId() {
-        ensureInitialized();
+        ensureReadInitialized();
         String sql = "SELECT last_sync_id FROM sync_state WHERE id = 1";
 
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
+        try (ReadLease db = leaseRead()) {
+            try (Statement stmt = db.connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
 
                 if (rs.next()) {
@@ -649,11 +1551,11 @@ public class LocalCacheService {
     }
 
     public String getLastSyncTime() {
-        ensureInitialized();
+        ensureReadInitialized();
         String sql = "SELECT last_sync_time FROM sync_state WHERE id = 1";
 
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
+        try (ReadLease db = leaseRead()) {
+            try (Statement stmt = db.connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
 
                 if (rs.next()) {
@@ -666,20 +1568,19 @@ public class LocalCacheService {
         return null;
     }
 
+    /**
+     * O(1)：读取触发器维护的 cache_stats 计数
+     */
     public int getLocalNoteCount() {
-        ensureInitialized();
-        String sql = "SELECT COUNT(*) FROM notes_cache";
-
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
+        return (int) readStatCount(STAT_NOTES, "getLocalNoteCount");
+    }
 
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            } catch (SQLException e) {
-                logger.warning("getLocalNoteCount failed: " + e.getMessage());
-            }
+    private long readStatCount(String key, String caller) {
+        ensureReadInitialized();
+        try (ReadLease db = leaseRead()) {
+            return Math.max(0L, readStat(db.connection, key));
+        } catch (SQLException e) {
+            logger.warning(caller + " failed: " + e.getMessage());
         }
         return 0;
     }
@@ -692,30 +1593,24 @@ public class LocalCacheService {
      * @return List of notes
      */
     public List<NoteData> getNotesPaged(int offset, int limit) {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache ORDER BY created_at DESC LIMIT ? OFFSET ?";
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache ORDER BY created_at DESC LIMIT ? OFFSET ?";
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 pstmt.setInt(1, limit);
                 pstmt.setInt(2, offset);
                 ResultSet rs = pstmt.executeQuery();
 
                 while (rs.next()) {
-                    results.add(new NoteData(
-                            rs.getLong("id"),
-                            rs.getString("content"),
-                            rs.getString("channel"),
-                            rs.getString("created_at"),
-                            null
-                    ));
+                    results.add(readNoteRow(rs));
                 }
             } catch (SQLException e) {
                 logger.warning("getNotesPaged failed (offset=" + offset + ", limit=" + limit + "): " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
     }
 
     /**
@@ -727,24 +1622,18 @@ public class LocalCacheService {
      * @return List of notes
      */
     public List<NoteData> getNotesForReviewPaged(int days, int offset, int limit) {
-        ensureInitialized();
+        ensureReadInitialized();
         List<NoteData> results = new ArrayList<>();
-        String sql = "SELECT id, content, channel, created_at FROM notes_cache WHERE created_at >= datetime('now', '-' || ? || ' days') ORDER BY created_at DESC LIMIT ? OFFSET ?";
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache WHERE created_at >= datetime('now', '-' || ? || ' days') ORDER BY created_at DESC LIMIT ? OFFSET ?";
 
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 pstmt.setInt(1, days);
                 pstmt.setInt(2, limit);
                 pstmt.setInt(3, offset);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        results.add(new NoteData(
-                                rs.getLong("id"),
-                                rs.getString("content"),
-                                rs.getString("channel"),
-                                rs.getString("created_at"),
-                                null
-                        ));
+                        results.add(readNoteRow(rs));
                     }
                 }
             } catch (SQLException e) {
@@ -752,7 +1641,89 @@ public class LocalCacheService {
                         + ", limit=" + limit + "): " + e.getMessage());
             }
         }
-        return results;
+        return materializeContent(results);
+    }
+
+    // ==================== Keyset 分页 ====================
+    // 按 (created_at, id) 降序定位，续页只走索引区间，翻得再深每页成本也不变；
+    // 新笔记插到顶部也不会让后续页重复或漏行（OFFSET 分页会）
+
+    /**
+     * First / next page of all notes.
+     *
+     * @param continuationToken null for the first page, otherwise {@link NotePage#continuationToken} of the previous page
+     * @param limit             page size
+     */
+    public NotePage getNotesPage(String continuationToken, int limit) {
+        return queryNotePage(null, List.of(), continuationToken, limit, "getNotesPage");
+    }
+
+    /**
+     * First / next page of notes created within the last {@code days} days.
+     */
+    public NotePage getNotesForReviewPage(int days, String continuationToken, int limit) {
+        return queryNotePage("created_at >= datetime('now', '-' || ? || ' days')", List.of(days),
+                continuationToken, limit, "getNotesForReviewPage");
+    }
+
+    /**
+     * First / next page of notes from the same calendar day in past years.
+     */
+    public NotePage getNotesOnThisDayPage(String continuationToken, int limit) {
+        QuerySpec query = buildOnThisDayQuery();
+        if (query == null) {
+            return new NotePage(new ArrayList<>(), null);
+        }
+        return queryNotePage("(" + query.whereClause + ")", new ArrayList<>(query.args),
+                continuationToken, limit, "getNotesOnThisDayPage");
+    }
+
+    private NotePage queryNotePage(String whereClause, List<?> args, String continuationToken, int limit,
+                                   String operation) {
+        ensureReadInitialized();
+        PageCursor cursor = PageCursor.decode(continuationToken);
+        List<String> conditions = new ArrayList<>();
+        if (whereClause != null) {
+            conditions.add(whereClause);
+        }
+        if (cursor != null) {
+            // 行值比较可以直接用 idx_cache_created_at（索引项隐含 rowid = id）做区间扫描
+            conditions.add("(created_at, id) < (?, ?)");
+        }
+        String sql = "SELECT " + NOTE_COLUMNS + " FROM notes_cache"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY created_at DESC, id DESC LIMIT ?";
+
+        List<NoteData> results = new ArrayList<>();
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
+                int index = 1;
+                for (Object arg : args) {
+                    pstmt.setObject(index++, arg);
+                }
+                if (cursor != null) {
+                    pstmt.setString(index++, cursor.createdAt);
+                    pstmt.setLong(index++, cursor.id);
+                }
+                pstmt.setInt(index, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(readNoteRow(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warning(operation + " failed (limit=" + limit + "): " + e.getMessage());
+            }
+        }
+
+        String nextToken = null;
+        if (results.size() == limit && limit > 0) {
+            NoteData last = results.get(results.size() - 1);
+            if (last.createdAt != null) {
+                nextToken = new PageCursor(last.createdAt, last.id).encode();
+            }
+        }
+        return new NotePage(materializeContent(results), nextToken);
     }
 
     /**
@@ -762,11 +1733,16 @@ public class LocalCacheService {
      * @return Count of notes
      */
     public int getNotesCountForReview(int days) {
-        ensureInitialized();
-        String sql = "SELECT COUNT(*) FROM notes_cache WHERE created_at >= datetime('now', '-' || ? || ' days')";
-
-        synchronized (dbLock) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        ensureReadInitialized();
+        // 截止时刻之后的整天直接累加 note_day_counts；截止时刻所在的那一天只 COUNT 当天区间（走 created_at 索引），
+        // 结果与 created_at >= datetime('now', '-N days') 完全一致
+        String sql = "WITH cutoff(ts) AS (SELECT datetime('now', '-' || ? || ' days')) "
+                + "SELECT (SELECT COALESCE(SUM(cnt), 0) FROM note_day_counts, cutoff WHERE day > substr(cutoff.ts, 1, 10)) "
+                + "+ (SELECT COUNT(*) FROM notes_cache, cutoff "
+                + "   WHERE created_at >= cutoff.ts AND created_at < date(cutoff.ts, '+1 day'))";
+
+        try (ReadLease db = leaseRead()) {
+            try (PreparedStatement pstmt = db.connection.prepareStatement(sql)) {
                 pstmt.setInt(1, days);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
@@ -781,11 +1757,11 @@ public class LocalCacheService {
     }
 
     public String getOldestNoteDate() {
-        ensureInitialized();
+        ensureReadInitialized();
         String sql = "SELECT MIN(created_at) FROM notes_cache";
 
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
+        try (ReadLease db = leaseRead()) {
+            try (Statement stmt = db.connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
 
                 if (rs.next()) {
@@ -798,39 +1774,23 @@ public class LocalCacheService {
         return null;
     }
 
+    /**
+     * 往年今日：本地日期同月同日、年份在 [2000, 今年) 之间。走 idx_cache_month_day 索引查找。
+     * 与原先 LocalDate.withYear 的语义一致：今天是 Feb 29 时，非闰年取 Feb 28。
+     */
     private QuerySpec buildOnThisDayQuery() {
         LocalDate localDate = LocalDate.now();
-        ZoneId zoneId = ZoneId.systemDefault();
-        List<String> clauses = new ArrayList<>();
-        List<String> args = new ArrayList<>();
-
-        for (int year = 2000; year < localDate.getYear(); year++) {
-            try {
-                String startUtc = localDate.withYear(year)
-                        .atStartOfDay(zoneId)
-                        .withZoneSameInstant(ZoneOffset.UTC)
-                        .toLocalDateTime()
-                        .format(DB_TIMESTAMP_FORMATTER);
-                String endUtc = localDate.withYear(year)
-                        .atTime(23, 59, 59)
-                        .atZone(zoneId)
-                        .withZoneSameInstant(ZoneOffset.UTC)
-                        .toLocalDateTime()
-                        .format(DB_TIMESTAMP_FORMATTER);
-
-                clauses.add("(created_at >= ? AND created_at <= ?)");
-                args.add(startUtc);
-                args.add(endUtc);
-            } catch (DateTimeException ignored) {
-                // Skip invalid local dates such as Feb 29 in non-leap years.
-            }
-        }
-
-        if (clauses.isEmpty()) {
-            return null;
+        String monthDay = localDate.format(MONTH_DAY_FORMATTER);
+        String minYear = String.valueOf(ON_THIS_DAY_MIN_YEAR);
+        String thisYear = String.valueOf(localDate.getYear());
+        if (localDate.getMonthValue() == 2 && localDate.getDayOfMonth() == 29) {
+            String leapYear = "((local_year % 4 = 0 AND local_year % 100 <> 0) OR local_year % 400 = 0)";
+            return new QuerySpec("(month_day = ? OR (month_day = ? AND NOT " + leapYear + ")) "
+                    + "AND local_year >= ? AND local_year < ?",
+                    List.of(monthDay, "02-28", minYear, thisYear));
         }
-
-        return new QuerySpec(String.join(" OR ", clauses), args);
+        return new QuerySpec("month_day = ? AND local_year >= ? AND local_year < ?",
+                List.of(monthDay, minYear, thisYear));
     }
 
     private void bindQueryArgs(PreparedStatement pstmt, List<String> args) throws SQLException {
@@ -842,7 +1802,14 @@ public class LocalCacheService {
     public void close() {
         closed = true;
         initialized = false;
-        synchronized (dbLock) {
+        maintenanceExecutor.shutdownNow();
+        decryptedContentCache.clear();
+        ReadConnectionPool pool = readPool;
+        readPool = null;
+        if (pool != null) {
+            pool.close();
+        }
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try {
                 if (connection != null && !connection.isClosed()) {
                     connection.close();
@@ -854,9 +1821,27 @@ public class LocalCacheService {
         }
     }
 
+    /**
+     * Add lines from another service (e.g. sync metrics) to {@link #buildDiagnosticsSnapshot()}.
+     * Registering the same name again replaces the previous contributor.
+     */
+    public void registerDiagnosticsContributor(String name, Supplier<String> section) {
+        synchronized (diagnosticsContributors) {
+            diagnosticsContributors.removeIf(contributor -> contributor.name.equals(name));
+            diagnosticsContributors.add(new DiagnosticsContributor(name, section));
+        }
+    }
+
+    public void unregisterDiagnosticsContributor(String name) {
+        diagnosticsContributors.removeIf(contributor -> contributor.name.equals(name));
+    }
+
+    private record DiagnosticsContributor(String name, Supplier<String> section) {
+    }
+
     public String buildDiagnosticsSnapshot() {
         ensureInitialized();
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             StringBuilder sb = new StringBuilder();
             sb.append("=== KeeNotes Diagnostics Snapshot ===").append(System.lineSeparator());
             sb.append("time=").append(java.time.LocalDateTime.now()).append(System.lineSeparator());
@@ -891,13 +1876,25 @@ public class LocalCacheService {
 
             sb.append("initStep=").append(initStep).append(System.lineSeparator());
             sb.append("initialized=").append(initialized).append(System.lineSeparator());
+            // 锁等待/持有时间：dbReadPool 的 waitMaxMs 应远小于 dbWrite 的 holdMaxMs
+            sb.append(dbLock.stats().summary()).append(System.lineSeparator());
+            ReadConnectionPool pool = readPool;
+            sb.append(pool != null ? pool.stats().summary() : "dbReadPool: unavailable")
+                    .append(System.lineSeparator());
+            for (DiagnosticsContributor contributor : diagnosticsContributors) {
+                try {
+                    sb.append(contributor.section.get()).append(System.lineSeparator());
+                } catch (Exception e) {
+                    sb.append(contributor.name).append("=ERROR: ").append(e.getMessage()).append(System.lineSeparator());
+                }
+            }
             return sb.toString();
         }
     }
 
     public void resetSyncState() {
         ensureInitialized();
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (Statement stmt = connection.createStatement()) {
                 stmt.executeUpdate("UPDATE sync_state SET last_sync_id = -1, last_sync_time = NULL WHERE id = 1");
             } catch (SQLException e) {
@@ -908,7 +1905,7 @@ public class LocalCacheService {
 
     public void clearAllData() {
         ensureInitialized();
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (Statement stmt = connection.createStatement()) {
                 stmt.executeUpdate("DELETE FROM notes_cache");
                 stmt.executeUpdate("UPDATE sync_state SET last_sync_id = -1, last_sync_time = NULL WHERE id = 1");
@@ -916,6 +1913,9 @@ public class LocalCacheService {
                 throw new RuntimeException("Failed to clear cache data", e);
             }
         }
+        decryptedContentCache.clear();
+        // 本地数据已清空，之前的导入断点也不再可信
+        ImportJournal.discard();
 
         // Update note count property to 0
         refreshNoteCount();
@@ -932,7 +1932,7 @@ public class LocalCacheService {
 
     private void refreshPendingNoteCount() {
         int count = getPendingNoteCount();
-        Platform.runLater(() -> pendingNoteCountProperty.set(count));
+        runOnFxThread(() -> pendingNoteCountProperty.set(count));
     }
 
     public void insertPendingNote(String content, String channel) throws SQLException {
@@ -951,7 +1951,7 @@ public class LocalCacheService {
                                   String encryptedContent, String requestId) throws SQLException {
         ensureInitialized();
         String sql = "INSERT INTO pending_notes (content, channel, created_at, encrypted_content, request_id) VALUES (?, ?, ?, ?, ?)";
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
                 pstmt.setString(1, content);
                 pstmt.setString(2, channel);
@@ -964,21 +1964,193 @@ public class LocalCacheService {
         refreshPendingNoteCount();
     }
 
-    public List<PendingNoteData> getPendingNotes() {
+    /**
+     * Offline-first import: write {@code notes} into notes_cache under temporary negative ids, so they are
+     * searchable right away, and queue each one in pending_notes (local_note_id = its row) for the background
+     * upload, all in one transaction. A note whose content is null is ciphertext already and goes through lazy
+     * decryption. The local row is rekeyed to the server id on upload ({@link #completeLocalUpload}), or replaced
+     * by the sync echo, matched on the uploaded ciphertext.
+     *
+     * @return number of notes written
+     */
+    public int importNotesLocally(List<ApiServiceV2.PreparedNote> notes) throws SQLException {
+        ensureInitialized();
+        if (notes.isEmpty()) return 0;
+
+        String noteSql = "INSERT INTO notes_cache (id, content, channel, created_at, encrypted_content, is_decrypted, month_day, local_year) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String pendingSql = "INSERT INTO pending_notes (content, channel, created_at, encrypted_content, request_id, local_note_id) VALUES (?, ?, ?, ?, ?, ?)";
+        List<NoteData> written = new ArrayList<>(notes.size());
+
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            boolean autoCommitChanged = false;
+            SQLException failure = null;
+
+            try (PreparedStatement noteStmt = connection.prepareStatement(noteSql);
+                 PreparedStatement pendingStmt = connection.prepareStatement(pendingSql)) {
+                connection.setAutoCommit(false);
+                autoCommitChanged = true;
+
+                long nextId = FIRST_LOCAL_IMPORT_ID;
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT MIN(id) FROM notes_cache")) {
+                    if (rs.next() && rs.getLong(1) <= FIRST_LOCAL_IMPORT_ID) {
+                        nextId = rs.getLong(1) - 1;
+                    }
+                }
+
+                for (ApiServiceV2.PreparedNote note : notes) {
+                    String createdAt = DateTimeUtil.requireUtcStorageFormat(note.createdAt());
+                    NoteData row = new NoteData(nextId--, note.content(), note.channel(), createdAt,
+                            note.encryptedContent());
+                    bindNoteInsert(noteStmt, row);
+                    noteStmt.addBatch();
+
+                    pendingStmt.setString(1, note.content() != null ? note.content() : note.encryptedContent());
+                    pendingStmt.setString(2, note.channel());
+                    pendingStmt.setString(3, createdAt);
+                    pendingStmt.setString(4, note.encryptedContent());
+                    pendingStmt.setString(5, note.requestId());
+                    pendingStmt.setLong(6, row.id);
+                    pendingStmt.addBatch();
+                    written.add(row);
+                }
+                noteStmt.executeBatch();
+                pendingStmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                failure = e;
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                if (autoCommitChanged) {
+                    try {
+                        connection.setAutoCommit(true);
+                    } catch (SQLException resetError) {
+                        if (failure != null) {
+                            failure.addSuppressed(resetError);
+                        } else {
+                            throw resetError;
+                        }
+                    }
+                }
+            }
+        }
+        afterNotesWritten(written);
+        refreshNoteCount();
+        refreshPendingNoteCount();
+        changeBus.reload();
+        return written.size();
+    }
+
+    /**
+     * Store the ciphertext of a locally imported note before its first upload attempt: retries reuse it,
+     * and the sync echo can be matched to the local row by it.
+     */
+    public void attachUploadPayload(long pendingId, long localNoteId, String encryptedContent) throws SQLException {
+        ensureInitialized();
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            try (PreparedStatement note = connection.prepareStatement(
+                    "UPDATE notes_cache SET encrypted_content = ? WHERE id = ?");
+                 PreparedStatement pending = connection.prepareStatement(
+                         "UPDATE pending_notes SET encrypted_content = ? WHERE id = ?")) {
+                note.setString(1, encryptedContent);
+                note.setLong(2, localNoteId);
+                note.executeUpdate();
+                pending.setString(1, encryptedContent);
+                pending.setLong(2, pendingId);
+                pending.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * A locally imported note was accepted by the server: drop it from the outbox and move its row from the
+     * temporary id to {@code serverId} (delete + insert, so the FTS and stats triggers follow). If the sync echo
+     * already wrote {@code serverId}, the local row is just removed; without a server id the row stays until
+     * the echo replaces it.
+     */
+    public void completeLocalUpload(long pendingId, long localNoteId, Long serverId) throws SQLException {
         ensureInitialized();
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            boolean autoCommitChanged = false;
+            SQLException failure = null;
+            try {
+                connection.setAutoCommit(false);
+                autoCommitChanged = true;
+                try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM pending_notes WHERE id = ?")) {
+                    pstmt.setLong(1, pendingId);
+                    pstmt.executeUpdate();
+                }
+                if (serverId != null) {
+                    try (PreparedStatement copy = connection.prepareStatement(
+                            "INSERT OR IGNORE INTO notes_cache (id, content, channel, created_at, encrypted_content, "
+                                    + "is_decrypted, month_day, local_year) SELECT ?, content, channel, created_at, "
+                                    + "encrypted_content, is_decrypted, month_day, local_year FROM notes_cache WHERE id = ?");
+                         PreparedStatement delete = connection.prepareStatement("DELETE FROM notes_cache WHERE id = ?")) {
+                        copy.setLong(1, serverId);
+                        copy.setLong(2, localNoteId);
+                        copy.executeUpdate();
+                        delete.setLong(1, localNoteId);
+                        delete.executeUpdate();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                failure = e;
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                if (autoCommitChanged) {
+                    try {
+                        connection.setAutoCommit(true);
+                    } catch (SQLException resetError) {
+                        if (failure != null) {
+                            failure.addSuppressed(resetError);
+                        } else {
+                            throw resetError;
+                        }
+                    }
+                }
+            }
+        }
+        if (serverId != null) {
+            String content = decryptedContentCache.get(localNoteId);
+            decryptedContentCache.remove(localNoteId);
+            if (content != null) {
+                decryptedContentCache.put(serverId, content);
+            }
+        }
+        refreshPendingNoteCount();
+    }
+
+    public List<PendingNoteData> getPendingNotes() {
+        ensureReadInitialized();
         List<PendingNoteData> notes = new ArrayList<>();
-        String sql = "SELECT id, content, channel, created_at, encrypted_content, request_id FROM pending_notes ORDER BY created_at ASC";
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
+        // 按写入顺序发送，手动暂存的笔记排在本地导入的积压之前（笔记自身的 created_at 可能早得多）
+        String sql = "SELECT id, content, channel, created_at, encrypted_content, request_id, local_note_id, failed_reason "
+                + "FROM pending_notes ORDER BY (local_note_id IS NOT NULL), id ASC";
+        try (ReadLease db = leaseRead()) {
+            try (Statement stmt = db.connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
+                    long localNoteId = rs.getLong("local_note_id");
                     notes.add(new PendingNoteData(
                             rs.getLong("id"),
                             rs.getString("content"),
                             rs.getString("channel"),
                             rs.getString("created_at"),
                             rs.getString("encrypted_content"),
-                            rs.getString("request_id")
+                            rs.getString("request_id"),
+                            localNoteId == 0 ? null : localNoteId,
+                            rs.getString("failed_reason")
                     ));
                 }
             } catch (SQLException e) {
@@ -988,10 +2160,38 @@ public class LocalCacheService {
         return notes;
     }
 
+    /**
+     * The server rejected this note for a reason retrying won't fix: keep it (visible in the pending list)
+     * but skip it in automatic retries until {@link #clearPendingNoteFailures()}.
+     */
+    public void markPendingNoteFailed(long id, String reason) throws SQLException {
+        ensureInitialized();
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "UPDATE pending_notes SET failed_reason = ? WHERE id = ?")) {
+                pstmt.setString(1, reason == null ? "rejected" : reason);
+                pstmt.setLong(2, id);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Give previously rejected notes another chance (called once per app start).
+     */
+    public void clearPendingNoteFailures() throws SQLException {
+        ensureInitialized();
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("UPDATE pending_notes SET failed_reason = NULL WHERE failed_reason IS NOT NULL");
+            }
+        }
+    }
+
     public void deletePendingNote(long id) throws SQLException {
         ensureInitialized();
         String sql = "DELETE FROM pending_notes WHERE id = ?";
-        synchronized (dbLock) {
+        try (TimedLock.Hold ignored = dbLock.acquire()) {
             try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
                 pstmt.setLong(1, id);
                 pstmt.executeUpdate();
@@ -1001,16 +2201,7 @@ public class LocalCacheService {
     }
 
     public int getPendingNoteCount() {
-        ensureInitialized();
-        synchronized (dbLock) {
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM pending_notes")) {
-                if (rs.next()) return rs.getInt(1);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        }
-        return 0;
+        return (int) readStatCount(STAT_PENDING, "getPendingNoteCount");
     }
 
     public static class PendingNoteData {
@@ -1020,6 +2211,10 @@ public class LocalCacheService {
         public final String createdAt;
         public final String encryptedContent;
         public final String requestId;
+        // 本地优先导入的笔记在 notes_cache 中的临时 id（负数），普通暂存笔记为 null
+        public final Long localNoteId;
+        // 服务器拒收的原因，null 表示仍在正常重试
+        public final String failedReason;
 
         public PendingNoteData(long id, String content, String channel, String createdAt) {
             this(id, content, channel, createdAt, null, null);
@@ -1027,12 +2222,24 @@ public class LocalCacheService {
 
         public PendingNoteData(long id, String content, String channel, String createdAt,
                                String encryptedContent, String requestId) {
+            this(id, content, channel, createdAt, encryptedContent, requestId, null);
+        }
+
+        public PendingNoteData(long id, String content, String channel, String createdAt,
+                               String encryptedContent, String requestId, Long localNoteId) {
+            this(id, content, channel, createdAt, encryptedContent, requestId, localNoteId, null);
+        }
+
+        public PendingNoteData(long id, String content, String channel, String createdAt,
+                               String encryptedContent, String requestId, Long localNoteId, String failedReason) {
             this.id = id;
             this.content = content;
             this.channel = channel;
             this.createdAt = createdAt;
             this.encryptedContent = encryptedContent;
             this.requestId = requestId;
+            this.localNoteId = localNoteId;
+            this.failedReason = failedReason;
         }
 
         public boolean hasPreparedPayload() {
@@ -1070,6 +2277,54 @@ public class LocalCacheService {
         }
     }
 
+    /**
+     * One page of a keyset-paginated query. {@code continuationToken} is null when there are no more rows.
+     */
+    public static class NotePage {
+        public final List<NoteData> notes;
+        public final String continuationToken;
+
+        public NotePage(List<NoteData> notes, String continuationToken) {
+            this.notes = notes;
+            this.continuationToken = continuationToken;
+        }
+
+        public boolean hasMore() {
+            return continuationToken != null;
+        }
+    }
+
+    /**
+     * (created_at, id) of the last row of a page; serialized as an opaque URL-safe Base64 token.
+     */
+    private static class PageCursor {
+        final String createdAt;
+        final long id;
+
+        PageCursor(String createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        String encode() {
+            String raw = id + "|" + createdAt;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String token) {
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new PageCursor(raw.substring(sep + 1), Long.parseLong(raw.substring(0, sep)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid continuation token", e);
+            }
+        }
+    }
+
     private static class QuerySpec {
         final String whereClause;
         final List<String> args;
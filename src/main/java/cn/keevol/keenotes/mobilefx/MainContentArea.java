@@ -101,6 +101,8 @@ public class MainContentArea extends StackPane {
     private final UiLoadCoordinator uiLoads = new UiLoadCoordinator();
     private final FxCoalescer syncIndicatorShowCoalescer = new FxCoalescer();
     private final FxCoalescer syncIndicatorHideCoalescer = new FxCoalescer();
+    private final FxCoalescer realtimeIndicatorCoalescer = new FxCoalescer();
+    private javafx.animation.PauseTransition realtimeIndicatorHideDelay; // FX thread only
     private final Consumer<DesktopMainView.ViewMode> modeSwitchRequestHandler;
 
     public MainContentArea() {
@@ -186,12 +188,17 @@ public class MainContentArea extends StackPane {
 
             @Override
             public void onRealtimeUpdate(long id, String content) {
-                coalescedShowSyncIndicator("Syncing...");
-                Platform.runLater(() -> {
-                    javafx.animation.PauseTransition hideDelay = new javafx.animation.PauseTransition(
-                            javafx.util.Duration.millis(500));
-                    hideDelay.setOnFinished(e -> coalescedHideSyncIndicator());
-                    hideDelay.play();
+                // 一次推送风暴只占一个 FX runnable：显示指示器并重新开始同一个隐藏计时
+                realtimeIndicatorCoalescer.runLater(() -> {
+                    NotesDisplayPanel panel = visibleNotesPanelForSync();
+                    if (panel != null) {
+                        panel.showSyncIndicator("Syncing...");
+                    }
+                    if (realtimeIndicatorHideDelay == null) {
+                        realtimeIndicatorHideDelay = new javafx.animation.PauseTransition(Duration.millis(500));
+                        realtimeIndicatorHideDelay.setOnFinished(e -> coalescedHideSyncIndicator());
+                    }
+                    realtimeIndicatorHideDelay.playFromStart();
                 });
             }
 
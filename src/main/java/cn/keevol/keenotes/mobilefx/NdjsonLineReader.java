@@ -0,0 +1,152 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams an NDJSON file line by line over a {@link FileChannel}, tracking the byte offset of every line.
+ * The file is memory-mapped in {@link #MAP_WINDOW} windows; if mapping is not supported (some network or
+ * virtual file systems) it falls back to positional reads into one reused buffer.
+ * Lines are split on '\n' and decoded as UTF-8; a trailing '\r' is left for the caller's trim().
+ */
+final class NdjsonLineReader implements Closeable {
+
+    static final long MAP_WINDOW = 64L << 20;
+    private static final int READ_BUFFER = 1 << 20;
+
+    /**
+     * One physical line. {@code endOffset} is the offset right after its '\n' (or EOF),
+     * i.e. where reading has to restart to skip this line.
+     */
+    record Line(String text, long lineNumber, long startOffset, long endOffset) {
+    }
+
+    private final FileChannel channel;
+    private long size;
+    private long position;
+    private long lineNumber;
+
+    private ByteBuffer window;
+    private ByteBuffer readBuffer;
+    private boolean mapping = true;
+    private byte[] lineBuf = new byte[8192];
+
+    NdjsonLineReader(Path file) throws IOException {
+        this(file, 0, 0);
+    }
+
+    /**
+     * @param startOffset     byte offset of the first line to read (must be a line start)
+     * @param linesBeforeStart physical lines before {@code startOffset}, so line numbers stay absolute
+     */
+    NdjsonLineReader(Path file, long startOffset, long linesBeforeStart) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.position = Math.min(startOffset, size);
+        this.lineNumber = linesBeforeStart;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Bytes consumed so far (absolute offset of the next line).
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * @return the next line, or null at end of file
+     */
+    Line next() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        long start = position;
+        int len = 0;
+        while (position < size) {
+            if (!fillWindow()) {
+                break;
+            }
+            ByteBuffer w = window;
+            int from = w.position();
+            int limit = w.limit();
+            int nl = -1;
+            for (int i = from; i < limit; i++) {
+                if (w.get(i) == '\n') {
+                    nl = i;
+                    break;
+                }
+            }
+            int n = (nl >= 0 ? nl : limit) - from;
+            if (len + n > lineBuf.length) {
+                lineBuf = Arrays.copyOf(lineBuf, Math.max(lineBuf.length * 2, len + n));
+            }
+            w.get(from, lineBuf, len, n);
+            len += n;
+            int consumed = nl >= 0 ? n + 1 : n;
+            w.position(from + consumed);
+            position += consumed;
+            if (nl >= 0) {
+                break;
+            }
+        }
+        lineNumber++;
+        return new Line(new String(lineBuf, 0, len, StandardCharsets.UTF_8), lineNumber, start, position);
+    }
+
+    /**
+     * Make sure {@link #window} has unread bytes starting at {@link #position}.
+     *
+     * @return false if the file turned out shorter than its reported size
+     */
+    private boolean fillWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        long remaining = size - position;
+        if (mapping) {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, remaining));
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                mapping = false;
+            }
+        }
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(READ_BUFFER);
+        }
+        readBuffer.clear();
+        readBuffer.limit((int) Math.min(READ_BUFFER, remaining));
+        long at = position;
+        while (readBuffer.hasRemaining()) {
+            int read = channel.read(readBuffer, at);
+            if (read < 0) {
+                break;
+            }
+            at += read;
+        }
+        readBuffer.flip();
+        window = readBuffer;
+        if (!window.hasRemaining()) {
+            // 文件在读取过程中被截断
+            size = position;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,211 @@
+package cn.keevol.keenotes.mobilefx;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates NDJSON import files. Large files are split into byte regions at line boundaries and
+ * validated in parallel on a {@link ForkJoinPool}; the per-region results are merged in file order so
+ * the reported error is the first one in the file, with its absolute line number, exactly as the serial
+ * scan reports it.
+ */
+public final class NdjsonValidator {
+
+    // 小文件直接串行，拆分与调度的开销不值得
+    static final long PARALLEL_THRESHOLD = 8L << 20;
+    private static final long MIN_REGION = 2L << 20;
+    private static final long MAX_REGION = 32L << 20;
+
+    private NdjsonValidator() {
+    }
+
+    /**
+     * Validate on {@code pool}, in parallel when the file is large enough.
+     */
+    public static DataImportService.ValidationResult validate(Path file, ForkJoinPool pool) throws IOException {
+        if (Files.size(file) < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            return validateSerial(file);
+        }
+        return validateParallel(file, pool);
+    }
+
+    /**
+     * Single-threaded scan (the reference path).
+     */
+    public static DataImportService.ValidationResult validateSerial(Path file) throws IOException {
+        RegionResult result = scanRegion(file, 0, Long.MAX_VALUE, null);
+        return toValidationResult(result);
+    }
+
+    public static DataImportService.ValidationResult validateParallel(Path file, ForkJoinPool pool) throws IOException {
+        long size = Files.size(file);
+        long region = Math.max(MIN_REGION, Math.min(MAX_REGION, size / (pool.getParallelism() * 4L)));
+        int regions = (int) Math.max(1, (size + region - 1) / region);
+        AtomicLong firstErrorOffset = new AtomicLong(Long.MAX_VALUE);
+        try {
+            RegionResult result = pool.invoke(new RegionTask(file, region, size, 0, regions, firstErrorOffset));
+            return toValidationResult(result);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Check required fields of one (non-empty, trimmed) NDJSON line.
+     *
+     * @return null if valid, otherwise the reason
+     */
+    static String validateLine(String line) {
+        JsonObject json;
+        try {
+            json = new JsonObject(line);
+        } catch (Exception e) {
+            return "Invalid JSON format - " + e.getMessage();
+        }
+        try {
+            if (isBlank(json.getString("content"))) {
+                return "Missing or empty 'content' field";
+            }
+            if (isBlank(json.getString("channel"))) {
+                return "Missing or empty 'channel' field";
+            }
+            // Check for timestamp field (created_at or ts)
+            if (isBlank(json.getString("created_at")) && isBlank(json.getString("ts"))) {
+                return "Missing 'created_at' or 'ts' field";
+            }
+        } catch (ClassCastException e) {
+            return "Invalid field type - " + e.getMessage();
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static DataImportService.ValidationResult toValidationResult(RegionResult result) {
+        if (result.error() != null) {
+            return DataImportService.ValidationResult.error("Line " + result.errorLine() + ": " + result.error());
+        }
+        if (result.notes() == 0) {
+            return DataImportService.ValidationResult.error("File is empty");
+        }
+        return DataImportService.ValidationResult.success(result.notes());
+    }
+
+    /**
+     * Outcome of one region. {@code lines} counts physical lines (for numbering the regions after it);
+     * {@code errorLine} is relative to the region's first line and only meaningful when {@code error != null}.
+     */
+    private record RegionResult(long lines, int notes, long errorLine, String error) {
+
+        static final RegionResult EMPTY = new RegionResult(0, 0, 0, null);
+
+        /**
+         * Combine with the region that directly follows this one.
+         */
+        RegionResult then(RegionResult next) {
+            if (error != null) {
+                return this;
+            }
+            if (next.error != null) {
+                return new RegionResult(lines + next.lines, notes + next.notes, lines + next.errorLine, next.error);
+            }
+            return new RegionResult(lines + next.lines, notes + next.notes, 0, null);
+        }
+    }
+
+    /**
+     * Validate the lines that start in [{@code from}, {@code to}).
+     *
+     * @param firstErrorOffset shared with the other regions; a region that starts after a known error stops
+     *                         early, its result cannot change the outcome. Null for the serial scan.
+     */
+    private static RegionResult scanRegion(Path file, long from, long to, AtomicLong firstErrorOffset)
+            throws IOException {
+        long start = from;
+        if (from > 0) {
+            // 对齐到 from 之后的第一个行首：跳过 from-1 所在行的剩余部分
+            try (NdjsonLineReader skip = new NdjsonLineReader(file, from - 1, 0)) {
+                skip.next();
+                start = skip.position();
+            }
+        }
+        if (start >= to) {
+            return RegionResult.EMPTY;
+        }
+
+        long lines = 0;
+        int notes = 0;
+        try (NdjsonLineReader reader = new NdjsonLineReader(file, start, 0)) {
+            NdjsonLineReader.Line line;
+            while ((line = reader.next()) != null && line.startOffset() < to) {
+                lines++;
+                if (firstErrorOffset != null && (lines & 1023) == 0 && firstErrorOffset.get() < from) {
+                    return RegionResult.EMPTY;
+                }
+                String text = line.text().trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                notes++;
+                String error = validateLine(text);
+                if (error != null) {
+                    if (firstErrorOffset != null) {
+                        firstErrorOffset.accumulateAndGet(line.startOffset(), Math::min);
+                    }
+                    return new RegionResult(lines, notes, line.lineNumber(), error);
+                }
+            }
+        }
+        return new RegionResult(lines, notes, 0, null);
+    }
+
+    /**
+     * Regions [{@code first}, {@code last}) of size {@code region}; halves until a single region is left.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class RegionTask extends RecursiveTask<RegionResult> {
+        private final Path file;
+        private final long region;
+        private final long size;
+        private final int first;
+        private final int last;
+        private final AtomicLong firstErrorOffset;
+
+        RegionTask(Path file, long region, long size, int first, int last, AtomicLong firstErrorOffset) {
+            this.file = file;
+            this.region = region;
+            this.size = size;
+            this.first = first;
+            this.last = last;
+            this.firstErrorOffset = firstErrorOffset;
+        }
+
+        @Override
+        protected RegionResult compute() {
+            if (last - first == 1) {
+                long from = first * region;
+                long to = Math.min(size, last * region);
+                try {
+                    return scanRegion(file, from, to, firstErrorOffset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (first + last) >>> 1;
+            RegionTask left = new RegionTask(file, region, size, first, mid, firstErrorOffset);
+            RegionTask right = new RegionTask(file, region, size, mid, last, firstErrorOffset);
+            left.fork();
+            RegionResult rightResult = right.compute();
+            return left.join().then(rightResult);
+        }
+    }
+}
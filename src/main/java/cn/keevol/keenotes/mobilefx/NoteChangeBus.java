@@ -0,0 +1,115 @@
+package cn.keevol.keenotes.mobilefx;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces note-change notifications from the DB side into one {@link LocalCacheService.NoteChangeEvent}
+ * per FX pulse. Producers (any thread) only merge into the pending delta; the first change after a
+ * dispatch posts a single runnable, later changes ride along until it runs. A burst of realtime pushes
+ * therefore costs one FX runnable instead of several per note.
+ */
+final class NoteChangeBus {
+
+    private static final Logger logger = AppLogger.getLogger(NoteChangeBus.class);
+
+    private final List<LocalCacheService.NoteChangeListener> listeners;
+    private final IntConsumer countSink;
+
+    // pending delta, guarded by this
+    private final Map<Long, LocalCacheService.NoteData> pendingInserted = new LinkedHashMap<>();
+    private boolean pendingReload;
+    private int pendingCount = -1;
+    private boolean scheduled;
+
+    // FX thread only
+    private int dispatchedCount = -1;
+
+    NoteChangeBus(List<LocalCacheService.NoteChangeListener> listeners, IntConsumer countSink) {
+        this.listeners = listeners;
+        this.countSink = countSink;
+    }
+
+    void inserted(List<LocalCacheService.NoteData> notes) {
+        synchronized (this) {
+            for (LocalCacheService.NoteData note : notes) {
+                // 同一 id 在一个脉冲内多次写入，只保留最后一次
+                pendingInserted.remove(note.id);
+                pendingInserted.put(note.id, note);
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Data changed in bulk (sync round drained); listeners reload instead of applying ids.
+     */
+    void reload() {
+        synchronized (this) {
+            pendingReload = true;
+        }
+        schedule();
+    }
+
+    void noteCount(int count) {
+        synchronized (this) {
+            pendingCount = count;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        try {
+            Platform.runLater(this::dispatch);
+        } catch (IllegalStateException toolkitNotRunning) {
+            // 无 JavaFX 的场景（同步压测等）直接在当前线程分发
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        List<LocalCacheService.NoteData> inserted;
+        boolean reload;
+        int count;
+        synchronized (this) {
+            scheduled = false;
+            inserted = pendingInserted.isEmpty() ? List.of() : new ArrayList<>(pendingInserted.values());
+            pendingInserted.clear();
+            reload = pendingReload;
+            pendingReload = false;
+            count = pendingCount;
+        }
+
+        int delta = 0;
+        if (count >= 0 && count != dispatchedCount) {
+            delta = dispatchedCount >= 0 ? count - dispatchedCount : 0;
+            dispatchedCount = count;
+            countSink.accept(count);
+        }
+        if (inserted.isEmpty() && !reload) {
+            return;
+        }
+
+        LocalCacheService.NoteChangeEvent event = new LocalCacheService.NoteChangeEvent(
+                inserted, reload, dispatchedCount, delta);
+        for (LocalCacheService.NoteChangeListener listener : listeners) {
+            try {
+                listener.onNotesChanged(event);
+            } catch (Exception e) {
+                logger.warning("Note change listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
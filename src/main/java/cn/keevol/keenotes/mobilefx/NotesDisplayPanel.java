@@ -38,7 +38,7 @@ public class NotesDisplayPanel extends VBox {
 
     private static final Logger logger = AppLogger.getLogger(NotesDisplayPanel.class);
 
-    /** reviewDays sentinel: paginate via {@link LocalCacheService#getNotesOnThisDayPaged} */
+    /** reviewDays sentinel: paginate via {@link LocalCacheService#getNotesOnThisDayPage} */
     public static final int PAGINATION_MODE_ON_THIS_DAY = -1;
 
     // ListView (virtualized, replaces VBox + ScrollPane)
@@ -66,6 +66,8 @@ public class NotesDisplayPanel extends VBox {
     private boolean useTruePagination = false;
     private int totalNoteCount = 0;
     private int loadedFromDbCount = 0;
+    // Keyset pagination cursor for the next page; null once the last page has been loaded
+    private String continuationToken = null;
     private LocalCacheService localCache = null;
     private int reviewDays = 0;
     private java.util.function.Consumer<java.util.List<LocalCacheService.NoteData>> noteLoadCallback = null;
@@ -414,6 +416,7 @@ public class NotesDisplayPanel extends VBox {
             showEmptyState("No notes found");
             useTruePagination = false;
             loadedFromDbCount = 0;
+            continuationToken = null;
             return;
         }
 
@@ -423,6 +426,7 @@ public class NotesDisplayPanel extends VBox {
         this.reviewDays = days;
         this.noteLoadCallback = noteLoadCallback;
         loadedFromDbCount = 0;
+        continuationToken = null;
 
         String countText = totalCount + " note(s)";
         if (periodInfo != null && !periodInfo.isEmpty()) {
@@ -450,18 +454,11 @@ public class NotesDisplayPanel extends VBox {
                         + ", retryAttempt=" + currentRetryAttempt
                         + ", totalNoteCount=" + totalNoteCount
                         + ", reviewDays=" + reviewDays);
-                List<LocalCacheService.NoteData> notes;
-                if (reviewDays == PAGINATION_MODE_ON_THIS_DAY) {
-                    notes = localCache.getNotesOnThisDayPaged(0, 20);
-                } else if (reviewDays > 0) {
-                    notes = localCache.getNotesForReviewPaged(reviewDays, 0, 20);
-                } else {
-                    notes = localCache.getNotesPaged(0, 20);
-                }
+                LocalCacheService.NotePage page = loadNotePage(null, 20);
                 if (Thread.currentThread().isInterrupted() || gen != loadGeneration) {
                     return null;
                 }
-                Platform.runLater(() -> applyInitialNotesFromDb(gen, currentRetryAttempt, notes));
+                Platform.runLater(() -> applyInitialNotesFromDb(gen, currentRetryAttempt, page));
             } catch (Exception e) {
                 if (!Thread.currentThread().isInterrupted() && gen == loadGeneration) {
                     Platform.runLater(() -> {
@@ -475,7 +472,21 @@ public class NotesDisplayPanel extends VBox {
         });
     }
 
-    private void applyInitialNotesFromDb(int gen, int currentRetryAttempt, List<LocalCacheService.NoteData> notes) {
+    /**
+     * Runs on the UI-DB executor; picks the keyset query for the current pagination mode.
+     */
+    private LocalCacheService.NotePage loadNotePage(String token, int limit) {
+        if (reviewDays == PAGINATION_MODE_ON_THIS_DAY) {
+            return localCache.getNotesOnThisDayPage(token, limit);
+        } else if (reviewDays > 0) {
+            return localCache.getNotesForReviewPage(reviewDays, token, limit);
+        } else {
+            return localCache.getNotesPage(token, limit);
+        }
+    }
+
+    private void applyInitialNotesFromDb(int gen, int currentRetryAttempt, LocalCacheService.NotePage page) {
+        List<LocalCacheService.NoteData> notes = page.notes;
         if (gen != loadGeneration) {
             logger.info("loadInitialNotesFromDb: stale generation, skipping"
                     + " (gen=" + gen + ", current=" + loadGeneration + ")");
@@ -503,6 +514,7 @@ public class NotesDisplayPanel extends VBox {
 
         appendUniqueNotes(notes);
         loadedFromDbCount = notes.size();
+        continuationToken = page.continuationToken;
         logger.info("loadInitialNotesFromDb: rendered " + notes.size()
                 + " notes via ListView, noteItems.size=" + noteItems.size());
     }
@@ -549,23 +561,17 @@ public class NotesDisplayPanel extends VBox {
      * Load more notes from database (true pagination, triggered by scroll)
      */
     private void loadMoreNotesFromDb() {
-        if (isLoadingMore || loadedFromDbCount >= totalNoteCount)
+        if (isLoadingMore || continuationToken == null || loadedFromDbCount >= totalNoteCount)
             return;
 
         isLoadingMore = true;
         final int gen = loadGeneration;
-        final int offset = loadedFromDbCount;
+        final String token = continuationToken;
 
         AppExecutors.submitUiDb(() -> {
             try {
-                List<LocalCacheService.NoteData> notes;
-                if (reviewDays == PAGINATION_MODE_ON_THIS_DAY) {
-                    notes = localCache.getNotesOnThisDayPaged(offset, 10);
-                } else if (reviewDays > 0) {
-                    notes = localCache.getNotesForReviewPaged(reviewDays, offset, 10);
-                } else {
-                    notes = localCache.getNotesPaged(offset, 10);
-                }
+                LocalCacheService.NotePage page = loadNotePage(token, 10);
+                List<LocalCacheService.NoteData> notes = page.notes;
                 if (Thread.currentThread().isInterrupted() || gen != loadGeneration) {
                     Platform.runLater(() -> isLoadingMore = false);
                     return null;
@@ -580,6 +586,7 @@ public class NotesDisplayPanel extends VBox {
                     }
                     appendUniqueNotes(notes);
                     loadedFromDbCount += notes.size();
+                    continuationToken = page.continuationToken;
                     isLoadingMore = false;
                 });
             } catch (Exception e) {
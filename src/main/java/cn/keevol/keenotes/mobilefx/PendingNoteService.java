@@ -18,12 +18,20 @@ import java.util.logging.Logger;
 public class PendingNoteService {
     private static final Logger logger = Logger.getLogger(PendingNoteService.class.getName());
     private static final long RETRY_INTERVAL_MINUTES = 30;
+    private static final int MAX_SEND_ATTEMPTS = 4;
+    // 与导入相同的自适应节流参数：积压上传（如本地优先导入）不再无间隔地逐条打满服务器
+    private static final long TARGET_LATENCY_MS = 800;
+    private static final long BACKOFF_FLOOR_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
 
     private static PendingNoteService instance;
 
     private final LocalCacheService localCache;
     private ScheduledExecutorService retryScheduler;
     private final AtomicBoolean retrying = new AtomicBoolean(false);
+    // 只在 pending-note-retry 线程上使用
+    private final AdaptiveRateLimiter limiter =
+            new AdaptiveRateLimiter(TARGET_LATENCY_MS, BACKOFF_FLOOR_MS, MAX_BACKOFF_MS);
 
     private PendingNoteService() {
         this.localCache = LocalCacheService.getInstance();
@@ -83,6 +91,12 @@ public class PendingNoteService {
         if (retryScheduler != null && !retryScheduler.isShutdown()) {
             return;
         }
+        try {
+            // 上次运行中被拒收的笔记在每次启动时重新尝试一次
+            localCache.clearPendingNoteFailures();
+        } catch (Exception e) {
+            logger.warning("Failed to reset rejected pending notes: " + e.getMessage());
+        }
         retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "pending-note-retry");
             t.setDaemon(true);
@@ -103,56 +117,143 @@ public class PendingNoteService {
     public void onNetworkRestored() {
         if (localCache.getPendingNoteCount() > 0) {
             logger.info("Network restored, triggering pending note retry");
-            if (retryScheduler != null && !retryScheduler.isShutdown()) {
-                retryScheduler.submit(this::retryPendingNotes);
-            }
+            retryNow();
+        }
+    }
+
+    /**
+     * 立即在后台发送一轮（如本地优先导入写入大量 pending notes 之后），不等下一个定时周期
+     */
+    public void retryNow() {
+        if (retryScheduler != null && !retryScheduler.isShutdown()) {
+            retryScheduler.submit(this::retryPendingNotes);
         }
     }
 
     /**
-     * 逐条重试发送 pending notes（按 created_at 顺序）
+     * 逐条重试发送 pending notes（按写入顺序，手动暂存的笔记优先于本地导入的积压）
+     * - 请求间隔由 AdaptiveRateLimiter 控制，429/5xx 退避后重试同一条
+     * - 服务器拒收（其余 4xx 或单条数据错误）的行标记为 failed 并跳过，不再堵住后面的笔记
+     * - 网络错误 / 超时 / 持续过载时停止本轮，等下次重试
      */
     private void retryPendingNotes() {
         if (!retrying.compareAndSet(false, true)) return;
 
+        boolean rekeyed = false;
         try {
+            ApiServiceV2 apiService = ServiceManager.getInstance().getApiService();
+            if (!apiService.isConfigured() || !apiService.isEncryptionEnabled()) {
+                // 配置缺失对所有笔记都一样，不是单条笔记的问题
+                return;
+            }
             List<LocalCacheService.PendingNoteData> pendingNotes = localCache.getPendingNotes();
             if (pendingNotes.isEmpty()) return;
 
             logger.info("Retrying " + pendingNotes.size() + " pending notes...");
-            ApiServiceV2 apiService = ServiceManager.getInstance().getApiService();
 
             for (LocalCacheService.PendingNoteData note : pendingNotes) {
+                if (note.failedReason != null) {
+                    continue;
+                }
                 try {
-                    ApiServiceV2.ApiResult result = note.hasPreparedPayload()
-                            ? apiService.postPreparedNote(note.toPreparedNote()).get(30, TimeUnit.SECONDS)
-                            : apiService.postNote(note.content, note.channel, note.createdAt)
-                                    .get(30, TimeUnit.SECONDS);
+                    ApiServiceV2.ApiResult result = sendWithPacing(apiService, note);
 
                     if (result.success()) {
-                        localCache.deletePendingNote(note.id);
-                        logger.info("Pending note sent successfully, id=" + note.id);
-                    } else {
+                        if (note.localNoteId != null) {
+                            localCache.completeLocalUpload(note.id, note.localNoteId, result.noteId());
+                            rekeyed = true;
+                        } else {
+                            localCache.deletePendingNote(note.id);
+                        }
+                        logger.fine("Pending note sent successfully, id=" + note.id);
+                    } else if (result.retryable()) {
                         logger.warning("Pending note send failed, id=" + note.id + ": " + result.message());
                         if (result.networkError()) {
                             ServiceManager.getInstance().getWebSocketService()
                                     .markConnectionSuspect("pending-retry-network-error");
                         }
-                        break; // 失败后停止，等下次重试
+                        break; // 网络或服务器暂时不可用，等下次重试
+                    } else {
+                        logger.warning("Pending note rejected, id=" + note.id + ": " + result.message());
+                        markFailed(note, result.message());
                     }
                 } catch (TimeoutException e) {
                     logger.warning("Pending note send timeout, id=" + note.id);
                     break;
-                } catch (Exception e) {
-                    logger.warning("Pending note send error, id=" + note.id + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                     break;
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                    logger.warning("Pending note send error, id=" + note.id + ": " + cause.getMessage());
+                    markFailed(note, cause.getMessage());
                 }
             }
         } finally {
+            if (rekeyed) {
+                // 本地导入的行换成了服务器 id，列表整体重载
+                localCache.notifyBatchSyncApplied();
+            }
             retrying.set(false);
         }
     }
 
+    /**
+     * Send one note, waiting for the limiter first; 429 / 5xx are retried with backoff up to
+     * {@link #MAX_SEND_ATTEMPTS} times, a network error is returned right away.
+     */
+    private ApiServiceV2.ApiResult sendWithPacing(ApiServiceV2 apiService, LocalCacheService.PendingNoteData note)
+            throws Exception {
+        ApiServiceV2.PreparedNote prepared = note.localNoteId != null
+                ? prepareLocalImport(apiService, note)
+                : note.hasPreparedPayload() ? note.toPreparedNote() : null;
+        ApiServiceV2.ApiResult result = null;
+        for (int attempt = 1; attempt <= MAX_SEND_ATTEMPTS; attempt++) {
+            if (!limiter.acquire(() -> Thread.currentThread().isInterrupted())) {
+                throw new InterruptedException();
+            }
+            long start = System.nanoTime();
+            result = prepared != null
+                    ? apiService.postPreparedNote(prepared).get(30, TimeUnit.SECONDS)
+                    : apiService.postNote(note.content, note.channel, note.createdAt).get(30, TimeUnit.SECONDS);
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!result.retryable()) {
+                limiter.onSuccess(latencyMs);
+                return result;
+            }
+            limiter.onThrottled();
+            if (result.networkError()) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private void markFailed(LocalCacheService.PendingNoteData note, String reason) {
+        try {
+            localCache.markPendingNoteFailed(note.id, reason);
+        } catch (Exception e) {
+            logger.warning("Failed to mark pending note " + note.id + " as failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 本地优先导入的笔记：明文笔记在首次上传时才加密，密文先写回本地再发送，
+     * 重试复用同一密文和 request_id（服务器去重），同步回显也能按密文对上本地临时行
+     */
+    private ApiServiceV2.PreparedNote prepareLocalImport(ApiServiceV2 apiService, LocalCacheService.PendingNoteData note)
+            throws Exception {
+        ApiServiceV2.PreparedNote prepared = note.toPreparedNote();
+        if (!note.hasPreparedPayload()) {
+            ApiServiceV2.PreparedNote encrypted = apiService.prepareNote(note.content, note.channel, note.createdAt)
+                    .get(30, TimeUnit.SECONDS);
+            prepared = new ApiServiceV2.PreparedNote(note.content, encrypted.encryptedContent(), note.channel,
+                    note.createdAt, note.requestId);
+            localCache.attachUploadPayload(note.id, note.localNoteId, prepared.encryptedContent());
+        }
+        return prepared;
+    }
+
     /**
      * 检查网络是否可用（基于 WebSocket 连接状态）
      */
@@ -0,0 +1,266 @@
+package cn.keevol.keenotes.mobilefx;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * On-disk cache of derived note keys (cache key → 32-byte AES key), stored next to keenotes_cache.db.
+ * <p>
+ * The file is sealed with AES-256-GCM under a key derived once per session from the PIN
+ * (Argon2id + HKDF over a random file salt), so it is no easier to attack than the notes themselves.
+ * A file sealed under another PIN fails authentication and is treated as empty, then overwritten.
+ * Loading is lazy (first lookup after the PIN is known); writes are debounced and atomic.
+ * <pre>
+ * file = "KNKC" | version(1) | fileSalt(16) | iv(12) | GCM(payload), AAD = everything before the ciphertext
+ * payload = count(int) | count × ( utf8Len(short) | cacheKey | key(32) )
+ * </pre>
+ */
+final class PersistentKeyCache {
+
+    private static final Logger logger = AppLogger.getLogger(PersistentKeyCache.class);
+
+    static final String FILE_NAME = "keenotes_keys.cache";
+
+    private static final byte[] MAGIC = "KNKC".getBytes(StandardCharsets.US_ASCII);
+    private static final byte FORMAT_VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + SALT_LENGTH + GCM_IV_LENGTH;
+    private static final byte[] HKDF_INFO_SEAL = "KeeNotes-KeyCache-Seal-v1".getBytes(StandardCharsets.UTF_8);
+
+    static final int MAX_ENTRIES = 1024;
+    private static final long SAVE_DELAY_MS = 1000;
+
+    /**
+     * Derives the sealing key from the PIN; supplied by {@link Argon2KeyEngine} so it shares the memory budget.
+     */
+    interface SealKeyDeriver {
+        SecretKey derive(String password, byte[] salt, byte[] hkdfInfo);
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path file;
+    private final SealKeyDeriver deriver;
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "KeyCache-Save");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, SecretKey> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // 当前已加载的 PIN 代次（Argon2KeyEngine.generation）；-1 表示尚未加载
+    private long loadedGeneration = -1;
+    private SecretKey sealKey;
+    private byte[] fileSalt;
+    private boolean saveScheduled = false;
+
+    PersistentKeyCache(Path file, SealKeyDeriver deriver) {
+        this.file = file;
+        this.deriver = deriver;
+    }
+
+    synchronized SecretKey get(long generation, String password, String cacheKey) {
+        ensureLoaded(generation, password);
+        return entries.get(cacheKey);
+    }
+
+    synchronized void put(long generation, String password, String cacheKey, SecretKey key) {
+        ensureLoaded(generation, password);
+        entries.put(cacheKey, key);
+        scheduleSave();
+    }
+
+    /**
+     * Remove the file and forget everything (e.g. when the feature is switched off).
+     */
+    synchronized void clear() {
+        entries.clear();
+        loadedGeneration = -1;
+        sealKey = null;
+        fileSalt = null;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warning("Failed to delete key cache file: " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded(long generation, String password) {
+        if (loadedGeneration == generation) {
+            return;
+        }
+        entries.clear();
+        sealKey = null;
+        fileSalt = null;
+        loadedGeneration = generation;
+
+        long start = System.currentTimeMillis();
+        try {
+            if (Files.exists(file)) {
+                readFile(password);
+            }
+        } catch (Exception e) {
+            // 其他 PIN 封存的文件或损坏文件：按空缓存处理，下次保存时覆盖
+            logger.info("Key cache file not usable, starting empty: " + e.getMessage());
+            entries.clear();
+            sealKey = null;
+            fileSalt = null;
+        }
+        if (sealKey == null) {
+            fileSalt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(fileSalt);
+            sealKey = deriver.derive(password, fileSalt, HKDF_INFO_SEAL);
+        }
+        logger.info("Key cache loaded: entries=" + entries.size() + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void readFile(String password) throws Exception {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < HEADER_LENGTH || !startsWithMagic(data) || data[MAGIC.length] != FORMAT_VERSION) {
+            throw new IOException("unrecognized key cache format");
+        }
+        int pos = MAGIC.length + 1;
+        byte[] salt = new byte[SALT_LENGTH];
+        System.arraycopy(data, pos, salt, 0, SALT_LENGTH);
+        pos += SALT_LENGTH;
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        System.arraycopy(data, pos, iv, 0, GCM_IV_LENGTH);
+
+        SecretKey key = deriver.derive(password, salt, HKDF_INFO_SEAL);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(data, 0, HEADER_LENGTH);
+        byte[] payload = cipher.doFinal(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                byte[] keyBytes = new byte[KEY_LENGTH];
+                in.readFully(keyBytes);
+                entries.put(new String(name, StandardCharsets.UTF_8), new SecretKeySpec(keyBytes, "AES"));
+            }
+        }
+        sealKey = key;
+        fileSalt = salt;
+    }
+
+    private static boolean startsWithMagic(byte[] data) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        try {
+            saver.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            saveScheduled = true;
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    private void save() {
+        byte[] data;
+        synchronized (this) {
+            saveScheduled = false;
+            if (sealKey == null) {
+                return;
+            }
+            try {
+                data = seal();
+            } catch (Exception e) {
+                logger.warning("Failed to seal key cache: " + e.getMessage());
+                return;
+            }
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            Files.write(tmp, data);
+            restrictToOwner(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to write key cache file: " + e.getMessage());
+        }
+    }
+
+    private byte[] seal() throws Exception {
+        List<Map.Entry<String, SecretKey>> snapshot = new ArrayList<>(entries.entrySet());
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(snapshot.size() * 96 + 4);
+        try (DataOutputStream out = new DataOutputStream(plain)) {
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, SecretKey> entry : snapshot) {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.write(entry.getValue().getEncoded());
+            }
+        }
+
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put(FORMAT_VERSION).put(fileSalt).put(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, sealKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(header.array());
+        byte[] ciphertext = cipher.doFinal(plain.toByteArray());
+
+        byte[] result = new byte[HEADER_LENGTH + ciphertext.length];
+        System.arraycopy(header.array(), 0, result, 0, HEADER_LENGTH);
+        System.arraycopy(ciphertext, 0, result, HEADER_LENGTH, ciphertext.length);
+        return result;
+    }
+
+    private static void restrictToOwner(Path path) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // non-POSIX file system (Windows): rely on the user profile ACL
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Small fixed pool of read-only SQLite connections.
+ * In WAL mode readers see the last committed snapshot and never wait for the writer connection,
+ * so list/search queries keep running while a sync batch transaction is open.
+ */
+final class ReadConnectionPool {
+
+    private static final Logger logger = AppLogger.getLogger(ReadConnectionPool.class);
+
+    // sqlite-jdbc "open_mode" = SQLITE_OPEN_READONLY
+    private static final String OPEN_MODE_READ_ONLY = "1";
+
+    private final String jdbcUrl;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> all = new ArrayList<>();
+    private final TimedLock.Stats stats = new TimedLock.Stats("dbReadPool");
+    private volatile boolean closed = false;
+
+    ReadConnectionPool(String jdbcUrl, int size) throws SQLException {
+        this.jdbcUrl = jdbcUrl;
+        this.idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection conn = open();
+                all.add(conn);
+                idle.add(conn);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("open_mode", OPEN_MODE_READ_ONLY);
+        Connection conn = DriverManager.getConnection(jdbcUrl, props);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout=30000");
+            stmt.execute("PRAGMA cache_size=10000");
+        }
+        return conn;
+    }
+
+    /**
+     * Borrow an idle connection, waiting at most {@code timeoutMillis}.
+     *
+     * @return the lease, or null if the pool is closed or exhausted
+     */
+    Lease borrow(long timeoutMillis) {
+        if (closed) {
+            return null;
+        }
+        long requested = System.nanoTime();
+        Connection conn;
+        try {
+            conn = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (conn == null) {
+            logger.warning("Read connection pool exhausted after " + timeoutMillis + "ms");
+            return null;
+        }
+        return new Lease(conn, requested, System.nanoTime());
+    }
+
+    TimedLock.Stats stats() {
+        return stats;
+    }
+
+    void close() {
+        closed = true;
+        synchronized (all) {
+            for (Connection conn : all) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+            all.clear();
+        }
+        idle.clear();
+    }
+
+    private void giveBack(Connection conn) {
+        if (closed) {
+            closeQuietly(conn);
+            return;
+        }
+        if (isUsable(conn)) {
+            idle.offer(conn);
+            return;
+        }
+        // 连接已失效时换一条新的，保持池大小不变
+        synchronized (all) {
+            all.remove(conn);
+            closeQuietly(conn);
+            try {
+                Connection fresh = open();
+                all.add(fresh);
+                idle.offer(fresh);
+            } catch (SQLException e) {
+                logger.warning("Failed to replace broken read connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    final class Lease implements AutoCloseable {
+        final Connection connection;
+        private final long requestedNanos;
+        private final long acquiredNanos;
+
+        private Lease(Connection connection, long requestedNanos, long acquiredNanos) {
+            this.connection = connection;
+            this.requestedNanos = requestedNanos;
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        @Override
+        public void close() {
+            long released = System.nanoTime();
+            stats.record(acquiredNanos - requestedNanos, released - acquiredNanos);
+            giveBack(connection);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind buffer for realtime_update pushes.
+ * Decrypted notes are buffered on the DB-writer thread and flushed as one group commit when
+ * {@link #MAX_BATCH} notes are waiting or {@link #MAX_DELAY_MS} after the first buffered note,
+ * whichever comes first. The timer never extends the deadline, so a note waits at most MAX_DELAY_MS.
+ * Flushes always run on the DB-writer thread, keeping realtime writes ordered with sync batches.
+ */
+final class RealtimeWriteBehindQueue {
+
+    private static final Logger logger = AppLogger.getLogger(RealtimeWriteBehindQueue.class);
+
+    static final long MAX_DELAY_MS = 50;
+    static final int MAX_BATCH = 200;
+
+    /**
+     * Group-commit callback, invoked on the DB-writer thread with the drained notes in arrival order.
+     */
+    interface Flusher {
+        void flush(List<LocalCacheService.NoteData> notes) throws Exception;
+    }
+
+    private final SyncDecryptPipeline pipeline;
+    private final Flusher flusher;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "WebSocket-WriteBehind");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<LocalCacheService.NoteData> buffer = new ArrayList<>();
+    private ScheduledFuture<?> pendingFlush;
+
+    RealtimeWriteBehindQueue(SyncDecryptPipeline pipeline, Flusher flusher) {
+        this.pipeline = pipeline;
+        this.flusher = flusher;
+    }
+
+    /**
+     * Buffer a decrypted note. Must be called on the DB-writer thread.
+     */
+    void add(LocalCacheService.NoteData note) {
+        boolean flushNow;
+        synchronized (buffer) {
+            buffer.add(note);
+            flushNow = buffer.size() >= MAX_BATCH;
+            if (!flushNow && pendingFlush == null) {
+                try {
+                    pendingFlush = timer.schedule(this::scheduleFlushOnWriter, MAX_DELAY_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // shutting down: flush inline instead of waiting for the timer
+                    flushNow = true;
+                }
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Drain and group-commit everything buffered. Must be called on the DB-writer thread
+     * (or after the writer has stopped).
+     */
+    void flush() {
+        List<LocalCacheService.NoteData> drained;
+        synchronized (buffer) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            if (buffer.isEmpty()) {
+                return;
+            }
+            drained = new ArrayList<>(buffer);
+            buffer.clear();
+        }
+        try {
+            flusher.flush(drained);
+        } catch (Exception e) {
+            logger.warning("Failed to flush " + drained.size() + " realtime note(s): " + e.getMessage());
+        }
+    }
+
+    private void scheduleFlushOnWriter() {
+        try {
+            pipeline.runOnWriter(this::flush);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Realtime flush rejected: sync pipeline is shutting down");
+        }
+    }
+
+    /**
+     * Stop the timer and flush whatever is still buffered, waiting up to {@code timeoutMillis}
+     * for the DB writer to run it; falls back to flushing on the calling thread.
+     */
+    void shutdown(long timeoutMillis) {
+        timer.shutdownNow();
+        try {
+            pipeline.runOnWriter(this::flush).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("Realtime flush on shutdown did not complete on writer: " + e.getMessage());
+        }
+        // no-op when the writer already drained the buffer
+        flush();
+    }
+}
@@ -0,0 +1,82 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory holder for the decrypted settings secrets (encryption password, API token).
+ * Values are decrypted from the properties file once and kept until invalidated by a setter or an
+ * account switch. Every (re)load gets a new version stamp, so callers can detect a change by
+ * comparing a long instead of the secret itself.
+ */
+final class SecretVault {
+
+    /**
+     * Immutable snapshot of one secret; {@code value} is never null (empty when not configured).
+     */
+    static final class Secret {
+        final String value;
+        final long version;
+
+        private Secret(String value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        boolean isEmpty() {
+            return value.isEmpty();
+        }
+    }
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Secret password;
+    private volatile Secret token;
+
+    Secret password(Supplier<String> loader) {
+        Secret current = password;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (password == null) {
+                password = load(loader);
+            }
+            return password;
+        }
+    }
+
+    Secret token(Supplier<String> loader) {
+        Secret current = token;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (token == null) {
+                token = load(loader);
+            }
+            return token;
+        }
+    }
+
+    private Secret load(Supplier<String> loader) {
+        String value = loader.get();
+        return new Secret(value != null ? value : "", versions.incrementAndGet());
+    }
+
+    /**
+     * Call after the stored password changed; loads and invalidations are serialized on this vault,
+     * so a load that started before the change cannot publish the old value afterwards.
+     */
+    synchronized void invalidatePassword() {
+        password = null;
+    }
+
+    synchronized void invalidateToken() {
+        token = null;
+    }
+
+    synchronized void invalidateAll() {
+        password = null;
+        token = null;
+    }
+}
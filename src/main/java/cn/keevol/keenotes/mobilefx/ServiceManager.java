@@ -398,6 +398,9 @@ public class ServiceManager {
      * 使用响应式 Property，更新时间戳即可触发所有监听器
      */
     public void notifyAccountSwitched() {
+        SettingsService.getInstance().invalidateSecrets();
+        // 导入断点属于旧账户，不能在新账户下续用
+        ImportJournal.discard();
         Platform.runLater(() -> {
             accountSwitchedProperty.set(System.currentTimeMillis());
         });
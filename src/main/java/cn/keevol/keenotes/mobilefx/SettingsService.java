@@ -27,6 +27,10 @@ public class SettingsService {
     private static final String KEY_TOKEN = "token";
     private static final String KEY_REVIEW_DAYS = "review.days";
     private static final String KEY_ENCRYPTION_PASSWORD = "encryption.password";
+    private static final String KEY_ENCRYPTION_FORMAT_V3 = "encryption.format.v3";
+    private static final String KEY_ENCRYPTION_MASTER_SALT = "encryption.master.salt";
+    private static final String KEY_SYNC_LAZY_DECRYPTION = "sync.lazy.decryption";
+    private static final String KEY_PERSISTENT_KEY_CACHE = "encryption.key.cache.persistent";
     private static final String KEY_COPY_TO_CLIPBOARD = "copy.to.clipboard.on.post";
 
     private static final String KEY_SEARCH_SHORTCUT = "shortcut.search";
@@ -63,6 +67,8 @@ public class SettingsService {
 
     private static SettingsService instance;
     private final Properties properties;
+    // 解密后的 token / 加密密码常驻内存，避免每次调用都跑一遍 AES-GCM 解密
+    private final SecretVault secretVault = new SecretVault();
     private final Path settingsPath;
 
     // JavaFX Property for reactive binding
@@ -127,8 +133,7 @@ public class SettingsService {
     }
 
     public String getToken() {
-        String value = properties.getProperty(KEY_TOKEN, "");
-        return CryptoHelper.decrypt(value);
+        return secretVault.token(() -> CryptoHelper.decrypt(properties.getProperty(KEY_TOKEN, ""))).value;
     }
 
     public void setToken(String token) {
@@ -137,6 +142,7 @@ public class SettingsService {
         } else {
             properties.setProperty(KEY_TOKEN, CryptoHelper.encrypt(token));
         }
+        secretVault.invalidateToken();
     }
 
     public boolean isConfigured() {
@@ -166,8 +172,14 @@ public class SettingsService {
     }
 
     public String getEncryptionPassword() {
-        String value = properties.getProperty(KEY_ENCRYPTION_PASSWORD, "");
-        return CryptoHelper.decrypt(value);
+        return getEncryptionPasswordSecret().value;
+    }
+
+    /**
+     * 加密密码及其版本号；版本号在密码变更或账户切换后递增，供 CryptoService 廉价地判断密码是否变化
+     */
+    SecretVault.Secret getEncryptionPasswordSecret() {
+        return secretVault.password(() -> CryptoHelper.decrypt(properties.getProperty(KEY_ENCRYPTION_PASSWORD, "")));
     }
 
     public void setEncryptionPassword(String password) {
@@ -176,6 +188,14 @@ public class SettingsService {
         } else {
             properties.setProperty(KEY_ENCRYPTION_PASSWORD, CryptoHelper.encrypt(password));
         }
+        secretVault.invalidatePassword();
+    }
+
+    /**
+     * 丢弃内存中的解密凭据，下次读取时从配置重新解密（账户切换时调用）
+     */
+    public void invalidateSecrets() {
+        secretVault.invalidateAll();
     }
 
     public boolean isEncryptionEnabled() {
@@ -183,6 +203,54 @@ public class SettingsService {
         return pwd != null && !pwd.isEmpty();
     }
 
+    /**
+     * 是否使用 v3（会话主密钥）格式加密新笔记。默认关闭：只能读取 0x02 的客户端无法解密 v3。
+     */
+    public boolean isEncryptionFormatV3Enabled() {
+        return Boolean.parseBoolean(properties.getProperty(KEY_ENCRYPTION_FORMAT_V3, "false"));
+    }
+
+    public void setEncryptionFormatV3Enabled(boolean enabled) {
+        properties.setProperty(KEY_ENCRYPTION_FORMAT_V3, String.valueOf(enabled));
+    }
+
+    /**
+     * v3 主密钥的 Argon2 盐（Base64），不是秘密，每条 v3 密文里也会携带
+     */
+    public String getEncryptionMasterSalt() {
+        return properties.getProperty(KEY_ENCRYPTION_MASTER_SALT);
+    }
+
+    public void setEncryptionMasterSalt(String saltBase64) {
+        if (saltBase64 == null || saltBase64.isEmpty()) {
+            properties.remove(KEY_ENCRYPTION_MASTER_SALT);
+        } else {
+            properties.setProperty(KEY_ENCRYPTION_MASTER_SALT, saltBase64);
+        }
+    }
+
+    /**
+     * 懒解密：同步时只落库密文，列表读取时按需解密，空闲时后台回填（回填完成前搜索不到这些笔记）
+     */
+    public boolean isLazyDecryptionEnabled() {
+        return Boolean.parseBoolean(properties.getProperty(KEY_SYNC_LAZY_DECRYPTION, "false"));
+    }
+
+    public void setLazyDecryptionEnabled(boolean enabled) {
+        properties.setProperty(KEY_SYNC_LAZY_DECRYPTION, String.valueOf(enabled));
+    }
+
+    /**
+     * 派生密钥落盘缓存（keenotes_keys.cache，用 PIN 派生的密钥加密），重启后已见过的盐不再跑 Argon2
+     */
+    public boolean isPersistentKeyCacheEnabled() {
+        return Boolean.parseBoolean(properties.getProperty(KEY_PERSISTENT_KEY_CACHE, "false"));
+    }
+
+    public void setPersistentKeyCacheEnabled(boolean enabled) {
+        properties.setProperty(KEY_PERSISTENT_KEY_CACHE, String.valueOf(enabled));
+    }
+
     public int getLocalImportServerPort() {
         String port = properties.getProperty(KEY_LOCAL_IMPORT_SERVER_PORT, "1979");
         return Integer.parseInt(port);
@@ -166,6 +166,12 @@ public class SettingsView extends BorderPane {
         clearDataButton.setMaxWidth(300);
         clearDataButton.setOnAction(e -> clearLocalData());
 
+        // 区间哈希对账：只拉取与服务器不一致的区间，代替清空重同步
+        Button reconcileButton = new Button("Reconcile with Server");
+        reconcileButton.getStyleClass().addAll("action-button");
+        reconcileButton.setMaxWidth(300);
+        reconcileButton.setOnAction(e -> reconcileWithServer());
+
         Button diagnosticsButton = new Button("Copy Diagnostics Snapshot");
         diagnosticsButton.getStyleClass().addAll("action-button");
         diagnosticsButton.setMaxWidth(300);
@@ -174,7 +180,7 @@ public class SettingsView extends BorderPane {
         Label statusLabel = new Label();
         statusLabel.getStyleClass().add("status-label");
 
-        debugSection.getChildren().addAll(debugLabel, clearDataButton, diagnosticsButton, statusLabel);
+        debugSection.getChildren().addAll(debugLabel, clearDataButton, reconcileButton, diagnosticsButton, statusLabel);
         debugSection.setUserData(statusLabel); // Store reference for clearLocalData
 
         return debugSection;
@@ -219,6 +225,28 @@ public class SettingsView extends BorderPane {
         }, "ClearLocalData").start();
     }
 
+    private void reconcileWithServer() {
+        Label statusLabel = (Label) debugView.getUserData();
+        statusLabel.setText("Reconciling with server...");
+        statusLabel.getStyleClass().removeAll("error", "success");
+        statusLabel.getStyleClass().add("success");
+
+        ServiceManager.getInstance().getWebSocketService().reconcile().whenComplete((result, error) ->
+                javafx.application.Platform.runLater(() -> {
+                    statusLabel.getStyleClass().removeAll("error", "success");
+                    if (error != null) {
+                        Throwable cause = error instanceof java.util.concurrent.CompletionException
+                                && error.getCause() != null ? error.getCause() : error;
+                        statusLabel.setText("✗ Reconcile failed: " + cause.getMessage());
+                        statusLabel.getStyleClass().add("error");
+                    } else {
+                        statusLabel.setText("✓ Reconciled: " + result.mismatchedRanges() + " range(s) differed, "
+                                + result.notesFetched() + " fetched, " + result.notesDeleted() + " deleted");
+                        statusLabel.getStyleClass().add("success");
+                    }
+                }));
+    }
+
     private void copyDiagnosticsSnapshot() {
         Label statusLabel = (Label) debugView.getUserData();
         statusLabel.setText("Collecting diagnostics...");
@@ -0,0 +1,174 @@
+package cn.keevol.keenotes.mobilefx;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming (Jackson core) reader for WebSocket sync messages.
+ * A sync_batch is read token by token straight into {@link SyncNote} records, so a 500-note batch no
+ * longer materializes a Vert.x JsonObject tree plus a per-note snapshot list next to the raw text.
+ */
+public final class SyncBatchParser {
+
+    // JsonFactory 线程安全，可复用（内部缓冲区按线程回收）
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * One note as received from the server (content still encrypted).
+     */
+    public record SyncNote(long id, String content, String channel, String createdAt) {
+
+        /**
+         * Same fields from an already-parsed realtime_update note; null when {@code id} is missing or a field has the wrong type.
+         */
+        static SyncNote fromJson(JsonObject note) {
+            try {
+                Long id = note.getLong("id");
+                if (id == null) {
+                    return null;
+                }
+                return new SyncNote(id, note.getString("content"), note.getString("channel"), note.getString("created_at"));
+            } catch (ClassCastException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param notes null when the message had no "notes" array (empty batch)
+     */
+    public record SyncBatch(int batchId, int totalBatches, List<SyncNote> notes) {
+    }
+
+    private SyncBatchParser() {
+    }
+
+    /**
+     * Value of the top-level "type" field, skipping over any nested values before it without building them.
+     *
+     * @return the type, or null if absent or the message is not a JSON object
+     */
+    static String peekType(String message) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parse a sync_batch message. Notes without a numeric id, or with non-string text fields, are dropped.
+     */
+    public static SyncBatch parseBatch(String message) throws IOException {
+        int batchId = 0;
+        int totalBatches = 1;
+        List<SyncNote> notes = null;
+
+        try (JsonParser parser = FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("sync_batch is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "batch_id":
+                        batchId = value.isNumeric() ? parser.getIntValue() : batchId;
+                        break;
+                    case "total_batches":
+                        totalBatches = value.isNumeric() ? parser.getIntValue() : totalBatches;
+                        break;
+                    case "notes":
+                        if (value == JsonToken.START_ARRAY) {
+                            notes = readNotes(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return new SyncBatch(batchId, totalBatches, notes);
+    }
+
+    private static List<SyncNote> readNotes(JsonParser parser) throws IOException {
+        List<SyncNote> notes = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            SyncNote note = readNote(parser);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    private static SyncNote readNote(JsonParser parser) throws IOException {
+        long id = 0;
+        boolean hasId = false;
+        boolean valid = true;
+        String content = null;
+        String channel = null;
+        String createdAt = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    if (value == JsonToken.VALUE_NUMBER_INT) {
+                        id = parser.getLongValue();
+                        hasId = true;
+                    } else {
+                        valid &= value == JsonToken.VALUE_NULL;
+                        parser.skipChildren();
+                    }
+                    break;
+                case "content":
+                    content = readText(parser, value);
+                    valid &= content != null || value == JsonToken.VALUE_NULL;
+                    break;
+                case "channel":
+                    channel = readText(parser, value);
+                    valid &= channel != null || value == JsonToken.VALUE_NULL;
+                    break;
+                case "created_at":
+                    createdAt = readText(parser, value);
+                    valid &= createdAt != null || value == JsonToken.VALUE_NULL;
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return hasId && valid ? new SyncNote(id, content, channel, createdAt) : null;
+    }
+
+    private static String readText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
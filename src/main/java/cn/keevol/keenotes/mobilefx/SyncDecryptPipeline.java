@@ -0,0 +1,139 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Two-stage pipeline for notes received over the sync channel:
+ * <ol>
+ *   <li>decrypt stage — a bounded pool sized to CPU cores, so independent notes are decrypted
+ *       in parallel (concurrent Argon2 runs are capped by {@link Argon2KeyEngine});</li>
+ *   <li>write stage — a single DB-writer thread that runs each submission strictly in
+ *       submission order, so batches and realtime updates reach SQLite in arrival order.</li>
+ * </ol>
+ * A submission's write stage starts only after its own notes are decrypted and the previous
+ * submission's write stage has finished.
+ */
+final class SyncDecryptPipeline {
+
+    private static final Logger logger = AppLogger.getLogger(SyncDecryptPipeline.class);
+
+    /**
+     * Write stage callback, always invoked on the DB-writer thread.
+     */
+    interface WriteStage {
+        void write(List<LocalCacheService.NoteData> notes);
+    }
+
+    private final ThreadPoolExecutor decryptPool;
+    private final ExecutorService dbWriter;
+    private final Object tailLock = new Object();
+    private CompletableFuture<Void> writeTail = CompletableFuture.completedFuture(null);
+
+    SyncDecryptPipeline() {
+        int parallelism = computeDecryptParallelism();
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.decryptPool = new ThreadPoolExecutor(
+                parallelism, parallelism, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "WebSocket-Decrypt-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.decryptPool.allowCoreThreadTimeOut(true);
+        this.dbWriter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "WebSocket-CryptoDB");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.info("Sync decrypt pipeline started: decryptThreads=" + parallelism);
+    }
+
+    /**
+     * Pool size = CPU cores. Argon2 memory is bounded separately by {@link Argon2KeyEngine}'s budget,
+     * so threads beyond that budget still do AES/HKDF work for notes whose key is already cached.
+     */
+    static int computeDecryptParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Decrypt {@code items} on the decrypt pool, then hand the decrypted notes (in input order,
+     * skipping items the decoder rejected with {@code null}) to {@code stage} on the DB-writer thread.
+     *
+     * @throws RejectedExecutionException if the pipeline is shut down
+     */
+    <T> CompletableFuture<Void> submit(List<T> items,
+                                       Function<T, LocalCacheService.NoteData> decoder,
+                                       WriteStage stage) {
+        List<CompletableFuture<LocalCacheService.NoteData>> decrypted = new ArrayList<>(items.size());
+        for (T item : items) {
+            decrypted.add(CompletableFuture.supplyAsync(() -> decoder.apply(item), decryptPool));
+        }
+        CompletableFuture<List<LocalCacheService.NoteData>> allDecrypted =
+                CompletableFuture.allOf(decrypted.toArray(new CompletableFuture<?>[0]))
+                        .handle((ignored, error) -> collect(decrypted));
+
+        synchronized (tailLock) {
+            if (dbWriter.isShutdown()) {
+                throw new RejectedExecutionException("DB writer is shut down");
+            }
+            CompletableFuture<Void> next = writeTail
+                    .handle((ignored, error) -> null)
+                    .thenCombineAsync(allDecrypted, (ignored, notes) -> {
+                        stage.write(notes);
+                        return (Void) null;
+                    }, dbWriter);
+            writeTail = next;
+            return next;
+        }
+    }
+
+    /**
+     * Run {@code task} on the DB-writer thread after every write stage submitted before it.
+     *
+     * @throws RejectedExecutionException if the pipeline is shut down
+     */
+    CompletableFuture<Void> runOnWriter(Runnable task) {
+        synchronized (tailLock) {
+            if (dbWriter.isShutdown()) {
+                throw new RejectedExecutionException("DB writer is shut down");
+            }
+            CompletableFuture<Void> next = writeTail
+                    .handle((ignored, error) -> null)
+                    .thenRunAsync(task, dbWriter);
+            writeTail = next;
+            return next;
+        }
+    }
+
+    private static List<LocalCacheService.NoteData> collect(
+            List<CompletableFuture<LocalCacheService.NoteData>> decrypted) {
+        List<LocalCacheService.NoteData> notes = new ArrayList<>(decrypted.size());
+        for (CompletableFuture<LocalCacheService.NoteData> future : decrypted) {
+            LocalCacheService.NoteData note = future.isCompletedExceptionally() ? null : future.getNow(null);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    void shutdownNow() {
+        synchronized (tailLock) {
+            dbWriter.shutdownNow();
+        }
+        decryptPool.shutdownNow();
+    }
+}
@@ -0,0 +1,85 @@
+package cn.keevol.keenotes.mobilefx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR events for sync profiling. Recorded only while a flight recording is running, e.g.
+ * {@code -XX:StartFlightRecording=filename=sync.jfr}, then {@code jfr print --events cn.keevol.keenotes.* sync.jfr}.
+ */
+final class SyncJfrEvents {
+
+    private SyncJfrEvents() {
+    }
+
+    /**
+     * One sync_batch from arrival on the socket to its DB commit.
+     */
+    @Name("cn.keevol.keenotes.SyncBatch")
+    @Label("Sync Batch")
+    @Category({"KeeNotes", "Sync"})
+    static final class SyncBatchEvent extends Event {
+        @Label("Batch Id")
+        int batchId;
+
+        @Label("Notes")
+        int notes;
+
+        @Label("Message Size")
+        @DataAmount
+        long bytes;
+
+        @Label("JSON Parse Time")
+        @Timespan
+        long parseNanos;
+
+        @Label("Decrypt Wall Time")
+        @Description("From submission to the last note of the batch decrypted")
+        @Timespan
+        long decryptNanos;
+
+        @Label("Queue Wait")
+        @Description("Blocked for a pipeline slot plus waiting for the DB writer after decryption")
+        @Timespan
+        long queueWaitNanos;
+
+        @Label("DB Transaction Time")
+        @Timespan
+        long dbTxNanos;
+    }
+
+    /**
+     * A full sync round, first sync_batch to the drained sync_complete.
+     */
+    @Name("cn.keevol.keenotes.SyncRound")
+    @Label("Sync Round")
+    @Category({"KeeNotes", "Sync"})
+    static final class SyncRoundEvent extends Event {
+        @Label("Notes Written")
+        long notesWritten;
+
+        @Label("Total Synced")
+        @Description("total_synced reported by the server")
+        int totalSynced;
+
+        @Label("Notes Per Second")
+        double notesPerSecond;
+    }
+
+    /**
+     * One Argon2id + HKDF derivation (key cache miss).
+     */
+    @Name("cn.keevol.keenotes.KeyDerivation")
+    @Label("Key Derivation")
+    @Category({"KeeNotes", "Crypto"})
+    static final class KeyDerivationEvent extends Event {
+        @Label("Memory Budget Wait")
+        @Timespan
+        long permitWaitNanos;
+    }
+}
@@ -0,0 +1,238 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stage counters for the WebSocket sync path:
+ * receive (bytes, JSON parse) → flow-control / writer queue wait → decrypt (per note) → DB transaction → round.
+ * Recording is lock-free; {@link #snapshot()} is a best-effort consistent read for diagnostics.
+ * The same measurements are emitted as JFR events (see {@link SyncJfrEvents}).
+ */
+public final class SyncMetrics {
+
+    /**
+     * Point-in-time view of the sync metrics. Latencies in microseconds / milliseconds as named.
+     */
+    public record Snapshot(long batchesReceived, long notesReceived, long bytesReceived, double parseMsTotal,
+                           long notesDecrypted, long decryptP50Micros, long decryptP99Micros, long decryptMaxMicros,
+                           long dbTransactions, long notesWritten, double dbTxAvgMs, long dbTxMaxMs,
+                           double queueWaitAvgMs, long queueWaitMaxMs,
+                           long lastRoundNotes, long lastRoundMillis, double lastRoundNotesPerSecond) {
+    }
+
+    private final AtomicLong batchesReceived = new AtomicLong();
+    private final AtomicLong notesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    private final LatencyHistogram decryptLatency = new LatencyHistogram();
+
+    private final AtomicLong dbTransactions = new AtomicLong();
+    private final AtomicLong notesWritten = new AtomicLong();
+    private final AtomicLong dbTxNanos = new AtomicLong();
+    private final AtomicLong dbTxMaxNanos = new AtomicLong();
+
+    private final AtomicLong queueWaits = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong queueWaitMaxNanos = new AtomicLong();
+
+    // 当前同步轮次（第一个 sync_batch 到 sync_complete 落库）
+    private final Object roundLock = new Object();
+    private long roundStartNanos = -1L;
+    private long roundNotes;
+    private SyncJfrEvents.SyncRoundEvent roundEvent;
+    private volatile long lastRoundNotes;
+    private volatile long lastRoundMillis;
+
+    SyncMetrics() {
+    }
+
+    void recordBatchReceived(int notes, long bytes, long parseNanos) {
+        batchesReceived.incrementAndGet();
+        notesReceived.addAndGet(notes);
+        bytesReceived.addAndGet(bytes);
+        this.parseNanos.addAndGet(parseNanos);
+        synchronized (roundLock) {
+            if (roundStartNanos < 0) {
+                roundStartNanos = System.nanoTime();
+                roundNotes = 0;
+                roundEvent = new SyncJfrEvents.SyncRoundEvent();
+                roundEvent.begin();
+            }
+        }
+    }
+
+    void recordDecrypt(long nanos) {
+        decryptLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Time a received batch spent waiting that was not decrypt work: blocked for a pipeline slot plus
+     * waiting for the DB writer after its notes were decrypted.
+     */
+    void recordQueueWait(long nanos) {
+        queueWaits.incrementAndGet();
+        queueWaitNanos.addAndGet(nanos);
+        queueWaitMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordDbTransaction(int notes, long nanos) {
+        dbTransactions.incrementAndGet();
+        notesWritten.addAndGet(notes);
+        dbTxNanos.addAndGet(nanos);
+        dbTxMaxNanos.accumulateAndGet(nanos, Math::max);
+        synchronized (roundLock) {
+            if (roundStartNanos >= 0) {
+                roundNotes += notes;
+            }
+        }
+    }
+
+    /**
+     * Sync round drained (sync_complete and every batch written).
+     */
+    void recordRoundFinished(int totalSynced) {
+        synchronized (roundLock) {
+            if (roundStartNanos < 0) {
+                return;
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundStartNanos);
+            lastRoundNotes = roundNotes;
+            lastRoundMillis = millis;
+            SyncJfrEvents.SyncRoundEvent event = roundEvent;
+            event.end();
+            if (event.shouldCommit()) {
+                event.notesWritten = roundNotes;
+                event.totalSynced = totalSynced;
+                event.notesPerSecond = notesPerSecond(roundNotes, millis);
+                event.commit();
+            }
+            roundStartNanos = -1L;
+            roundEvent = null;
+        }
+    }
+
+    /**
+     * Connection dropped mid-round; the partial round is not reported.
+     */
+    void abandonRound() {
+        synchronized (roundLock) {
+            roundStartNanos = -1L;
+            roundEvent = null;
+        }
+    }
+
+    public Snapshot snapshot() {
+        long tx = dbTransactions.get();
+        long waits = queueWaits.get();
+        long roundNotesValue = lastRoundNotes;
+        long roundMillis = lastRoundMillis;
+        return new Snapshot(
+                batchesReceived.get(),
+                notesReceived.get(),
+                bytesReceived.get(),
+                parseNanos.get() / 1_000_000.0,
+                decryptLatency.count(),
+                decryptLatency.percentile(0.50),
+                decryptLatency.percentile(0.99),
+                decryptLatency.max(),
+                tx,
+                notesWritten.get(),
+                tx == 0 ? 0 : dbTxNanos.get() / 1_000_000.0 / tx,
+                TimeUnit.NANOSECONDS.toMillis(dbTxMaxNanos.get()),
+                waits == 0 ? 0 : queueWaitNanos.get() / 1_000_000.0 / waits,
+                TimeUnit.NANOSECONDS.toMillis(queueWaitMaxNanos.get()),
+                roundNotesValue,
+                roundMillis,
+                notesPerSecond(roundNotesValue, roundMillis));
+    }
+
+    /**
+     * Two-line summary for the diagnostics snapshot.
+     */
+    public String summary() {
+        Snapshot s = snapshot();
+        return String.format("syncRecv: batches=%d notes=%d bytes=%d parseMs=%.1f lastRoundNotes=%d lastRoundMs=%d notesPerSec=%.1f",
+                s.batchesReceived(), s.notesReceived(), s.bytesReceived(), s.parseMsTotal(),
+                s.lastRoundNotes(), s.lastRoundMillis(), s.lastRoundNotesPerSecond())
+                + System.lineSeparator()
+                + String.format("syncStages: decrypt n=%d p50Us=%d p99Us=%d maxUs=%d dbTx n=%d notes=%d avgMs=%.2f maxMs=%d queueWait avgMs=%.2f maxMs=%d",
+                s.notesDecrypted(), s.decryptP50Micros(), s.decryptP99Micros(), s.decryptMaxMicros(),
+                s.dbTransactions(), s.notesWritten(), s.dbTxAvgMs(), s.dbTxMaxMs(),
+                s.queueWaitAvgMs(), s.queueWaitMaxMs());
+    }
+
+    private static double notesPerSecond(long notes, long millis) {
+        return millis <= 0 ? 0 : notes * 1000.0 / millis;
+    }
+
+    /**
+     * Log-linear histogram over microseconds: exact below 16us, then 8 sub-buckets per power of two
+     * (about 12% relative error), so percentiles need no stored samples.
+     */
+    static final class LatencyHistogram {
+        private static final int LINEAR = 16;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long value = Math.max(0, micros);
+            counts.incrementAndGet(indexOf(value));
+            count.incrementAndGet();
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0 when empty), capped at the observed max.
+         */
+        long percentile(double quantile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        static int indexOf(long value) {
+            if (value < LINEAR) {
+                return (int) value;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR + (msb - 4) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int msb = (index - LINEAR) / SUB_BUCKETS + 4;
+            int sub = (index - LINEAR) % SUB_BUCKETS;
+            long width = 1L << (msb - SUB_BUCKET_BITS);
+            return (1L << msb) + (sub + 1) * width - 1;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Range hashes for anti-entropy reconciliation (reconcile_request / reconcile_range).
+ * Notes are grouped into buckets of {@code bucketSize} consecutive ids; a bucket hash is
+ * SHA-256 over its notes in ascending id order, each contributing
+ * {@code id (8 bytes, big-endian) | content length (4 bytes) | content (UTF-8 of the stored ciphertext)},
+ * truncated to 16 bytes and hex encoded. Client and server compute it the same way, so only
+ * buckets whose hashes differ have to be transferred.
+ */
+public final class SyncRangeHash {
+
+    public static final int DEFAULT_BUCKET_SIZE = 1000;
+    private static final int HASH_BYTES = 16;
+
+    /**
+     * @param start first id of the bucket (inclusive); the bucket covers [start, start + bucketSize)
+     */
+    public record Bucket(long start, int count, String hash) {
+    }
+
+    private SyncRangeHash() {
+    }
+
+    public static long bucketStart(long id, int bucketSize) {
+        return Math.floorDiv(id, bucketSize) * (long) bucketSize;
+    }
+
+    /**
+     * Streams (id, ciphertext) pairs in ascending id order into per-bucket hashes.
+     */
+    public static final class Builder {
+        private final int bucketSize;
+        private final List<Bucket> buckets = new ArrayList<>();
+        private final MessageDigest digest;
+        private final byte[] header = new byte[12];
+        private long currentStart = Long.MIN_VALUE;
+        private int currentCount = 0;
+        private long lastId = Long.MIN_VALUE;
+
+        public Builder(int bucketSize) {
+            if (bucketSize <= 0) {
+                throw new IllegalArgumentException("bucketSize must be positive");
+            }
+            this.bucketSize = bucketSize;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 unavailable", e);
+            }
+        }
+
+        public void add(long id, String content) {
+            if (id <= lastId) {
+                throw new IllegalArgumentException("ids must be strictly ascending: " + id + " after " + lastId);
+            }
+            lastId = id;
+            long start = bucketStart(id, bucketSize);
+            if (start != currentStart) {
+                flush();
+                currentStart = start;
+            }
+            byte[] bytes = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            for (int i = 0; i < 8; i++) {
+                header[i] = (byte) (id >>> (56 - 8 * i));
+            }
+            for (int i = 0; i < 4; i++) {
+                header[8 + i] = (byte) (bytes.length >>> (24 - 8 * i));
+            }
+            digest.update(header);
+            digest.update(bytes);
+            currentCount++;
+        }
+
+        private void flush() {
+            if (currentCount == 0) {
+                return;
+            }
+            byte[] full = digest.digest();
+            byte[] truncated = new byte[HASH_BYTES];
+            System.arraycopy(full, 0, truncated, 0, HASH_BYTES);
+            buckets.add(new Bucket(currentStart, currentCount, HexFormat.of().formatHex(truncated)));
+            currentCount = 0;
+        }
+
+        /**
+         * Non-empty buckets in ascending order; the builder must not be reused afterwards.
+         */
+        public List<Bucket> finish() {
+            flush();
+            return buckets;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cn.keevol.keenotes.mobilefx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant lock that records how long callers wait for it and how long they hold it.
+ * Used as a drop-in for {@code synchronized} blocks via try-with-resources:
+ * <pre>
+ * try (TimedLock.Hold ignored = lock.acquire()) { ... }
+ * </pre>
+ * Only the outermost acquisition of a nested (reentrant) hold is measured.
+ * The hold is never referenced inside the block, so callers add {@code @SuppressWarnings("try")}.
+ */
+final class TimedLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Stats stats;
+
+    TimedLock(String name) {
+        this.stats = new Stats(name);
+    }
+
+    Hold acquire() {
+        long requested = System.nanoTime();
+        lock.lock();
+        if (lock.getHoldCount() > 1) {
+            return nestedHold;
+        }
+        long acquired = System.nanoTime();
+        return new Hold(requested, acquired);
+    }
+
+    boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    Stats stats() {
+        return stats;
+    }
+
+    private final Hold nestedHold = new Hold(0L, 0L) {
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    };
+
+    class Hold implements AutoCloseable {
+        private final long requestedNanos;
+        private final long acquiredNanos;
+
+        private Hold(long requestedNanos, long acquiredNanos) {
+            this.requestedNanos = requestedNanos;
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        @Override
+        public void close() {
+            long released = System.nanoTime();
+            lock.unlock();
+            stats.record(acquiredNanos - requestedNanos, released - acquiredNanos);
+        }
+    }
+
+    /**
+     * Wait / hold counters for a lock or a pooled resource.
+     */
+    static final class Stats {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalHoldNanos = new AtomicLong();
+        private final AtomicLong maxHoldNanos = new AtomicLong();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(long waitNanos, long holdNanos) {
+            count.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            totalHoldNanos.addAndGet(holdNanos);
+            maxHoldNanos.accumulateAndGet(holdNanos, Math::max);
+        }
+
+        long maxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+        }
+
+        /**
+         * One-line summary, e.g. {@code dbWrite: count=12 waitAvgMs=0.01 waitMaxMs=0 holdAvgMs=3.20 holdMaxMs=41}
+         */
+        String summary() {
+            long n = count.get();
+            double waitAvg = n == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / n;
+            double holdAvg = n == 0 ? 0 : totalHoldNanos.get() / 1_000_000.0 / n;
+            return String.format("%s: count=%d waitAvgMs=%.2f waitMaxMs=%d holdAvgMs=%.2f holdMaxMs=%d",
+                    name, n, waitAvg, maxWaitMillis(), holdAvg,
+                    TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get()));
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package cn.keevol.keenotes.mobilefx;
 
 import okhttp3.*;
-import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * WebSocket客户端服务 - 基于OkHttp实现
@@ -32,7 +36,7 @@ public class WebSocketClientService {
     private final SettingsService settings;
 
     // 同步状态
-    private long lastSyncId = -1;
+    private volatile long lastSyncId = -1;
     private String clientId;
     private int reconnectAttempts = 0;
     private static final int MAX_RECONNECT_ATTEMPTS = 10;
@@ -62,21 +66,44 @@ public class WebSocketClientService {
     private long completedSyncLastSyncId = -1;
     private boolean syncDataChanged = false;
     private boolean syncWriteFailed = false;
+    // 断点续传：本轮已收到的最大 note id；批次 id 不单调递增时本轮停用逐批检查点
+    private long roundMaxReceivedId = -1;
+    private boolean checkpointsDisabled = false;
     private long syncEpoch = 0;
     private final Object syncStateLock = new Object();
 
-    // 专用线程：解密 + DB 写入（避免阻塞 OkHttp WebSocket 线程）
-    private final ExecutorService cryptoExecutor = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "WebSocket-CryptoDB");
-        t.setDaemon(true);
-        return t;
-    });
+    // 解密 + DB 写入流水线：并行解密池 + 单一有序写库线程（避免阻塞 OkHttp WebSocket 线程）
+    private final SyncDecryptPipeline syncPipeline = new SyncDecryptPipeline();
+    // 背压：已收到但未写库的批次最多 MAX_IN_FLIGHT_BATCHES 个，满了就阻塞读线程并通知服务器暂停
+    private static final int MAX_IN_FLIGHT_BATCHES = 4;
+    private final BatchFlowControl batchFlowControl = new BatchFlowControl(MAX_IN_FLIGHT_BATCHES);
+    // 同步各阶段耗时（解析、排队、解密、落库），见 getSyncMetrics / 诊断快照
+    private final SyncMetrics syncMetrics = new SyncMetrics();
+
+    // realtime_update 写入缓冲：凑满一批或最多等 50ms 后一个事务提交（笔记 + lastSyncId）
+    private final RealtimeWriteBehindQueue realtimeQueue = new RealtimeWriteBehindQueue(syncPipeline, this::flushRealtimeNotes);
+
+    // 区间哈希对账（reconcile_request / reconcile_range / reconcile_complete），同一时间最多一轮
+    private final AtomicReference<ReconcileSession> reconcileSession = new AtomicReference<>();
+    // 服务器超过这么久没有任何 reconcile 响应就放弃本轮，避免会话一直占着（每收到一个 range 重新计时）
+    private static final long RECONCILE_IDLE_TIMEOUT_SEC = 60;
+
+    /**
+     * Outcome of one {@link #reconcile()} round. Byte counts are the UTF-8 sizes of the JSON messages on the wire.
+     */
+    public record ReconcileResult(int bucketsSent, int mismatchedRanges, int notesFetched, int notesDeleted,
+                                  long bytesSent, long bytesReceived, long durationMs) {
+    }
 
     public WebSocketClientService() {
         this.localCache = LocalCacheService.getInstance();
         this.cryptoService = new CryptoService();
         this.settings = SettingsService.getInstance();
         this.clientId = generateClientId();
+        // 同名注册会替换旧实例（账号切换后重建服务时）
+        localCache.registerDiagnosticsContributor("sync", () -> getSyncQueueSummary() + System.lineSeparator()
+                + syncMetrics.summary() + System.lineSeparator()
+                + Argon2KeyEngine.getInstance().derivationSummary());
         // 不在构造函数中初始化OkHttp，延迟到第一次连接时
     }
 
@@ -382,6 +409,14 @@ public class WebSocketClientService {
             // 每次收到消息都更新时间戳，用于心跳超时检测
             lastMessageTime = System.currentTimeMillis();
 
+            // sync_batch 走流式解析，直接读成紧凑记录，不构建 JsonObject 树
+            if ("sync_batch".equals(SyncBatchParser.peekType(message))) {
+                long parseStart = System.nanoTime();
+                SyncBatchParser.SyncBatch batch = SyncBatchParser.parseBatch(message);
+                handleSyncBatch(batch, utf8Length(message), System.nanoTime() - parseStart);
+                return;
+            }
+
             JsonObject json = new JsonObject(message);
             String type = json.getString("type");
 
@@ -391,9 +426,6 @@ public class WebSocketClientService {
             }
 
             switch (type) {
-                case "sync_batch":
-                    handleSyncBatch(json);
-                    break;
                 case "sync_complete":
                     handleSyncComplete(json);
                     break;
@@ -417,6 +449,12 @@ public class WebSocketClientService {
                 case "new_note_ack":
                     handleNewNoteAck(json);
                     break;
+                case "reconcile_range":
+                    handleReconcileRange(json, utf8Length(message));
+                    break;
+                case "reconcile_complete":
+                    handleReconcileComplete(json, utf8Length(message));
+                    break;
                 default:
                     logger.warning("Unknown message type: " + type);
             }
@@ -426,13 +464,40 @@ public class WebSocketClientService {
         }
     }
 
-    private void handleSyncBatch(JsonObject json) {
+    /**
+     * UTF-8 encoded size of {@code text}, counted without encoding it (sync batches can be several MB).
+     */
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++; // 孤立代理项编码为 '?'
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param messageBytes UTF-8 size of the raw message
+     */
+    private void handleSyncBatch(SyncBatchParser.SyncBatch batch, int messageBytes, long parseNanos) {
         isSyncing.set(true);
 
-        int batchId = json.getInteger("batch_id", 0);
-        int totalBatches = json.getInteger("total_batches", 1);
+        int batchId = batch.batchId();
+        int totalBatches = batch.totalBatches();
 
-        JsonArray notes = json.getJsonArray("notes");
+        List<SyncBatchParser.SyncNote> notes = batch.notes();
+        syncMetrics.recordBatchReceived(notes != null ? notes.size() : 0, messageBytes, parseNanos);
         if (notes == null) {
             int currentBatch = markBatchReceived(totalBatches);
             notifySyncProgress(currentBatch, totalBatches);
@@ -440,64 +505,120 @@ public class WebSocketClientService {
             return;
         }
 
-        // Snapshot note data from JSON (lightweight, on OkHttp thread)
-        List<JsonObject> noteSnapshots = new ArrayList<>(notes.size());
-        for (int i = 0; i < notes.size(); i++) {
-            noteSnapshots.add(notes.getJsonObject(i));
+        SyncJfrEvents.SyncBatchEvent batchEvent = new SyncJfrEvents.SyncBatchEvent();
+        batchEvent.begin();
+        long arrivalNanos = System.nanoTime();
+        long arrivalEpoch;
+        synchronized (syncStateLock) {
+            arrivalEpoch = syncEpoch;
+        }
+        // 在 OkHttp 读线程上阻塞等待空位：不再读 socket，TCP 窗口自然把服务器压慢
+        BatchFlowControl.Slot slot = batchFlowControl.acquire(
+                () -> sendFlowControl("pause"),
+                () -> sendFlowControl("resume"),
+                () -> {
+                    // 主动暂停读取不算僵尸连接，等待期间刷新心跳时间戳
+                    lastMessageTime = System.currentTimeMillis();
+                    return isShuttingDown.get() || !isSyncEpochCurrent(arrivalEpoch);
+                });
+        if (slot == null) {
+            logger.info("Dropped batch " + batchId + ": connection reset while waiting for pipeline capacity");
+            return;
+        }
+        long slotWaitNanos = System.nanoTime() - arrivalNanos;
+
+        long batchMinId = Long.MAX_VALUE;
+        long batchMaxId = -1L;
+        for (SyncBatchParser.SyncNote note : notes) {
+            batchMinId = Math.min(batchMinId, note.id());
+            batchMaxId = Math.max(batchMaxId, note.id());
         }
 
         final long currentSyncEpoch;
+        final long checkpointId;
         synchronized (syncStateLock) {
             pendingBatchWrites++;
             currentSyncEpoch = syncEpoch;
+            // 检查点 = 本批最大 id，前提是服务器按 id 升序分批下发；一旦发现乱序，本轮只在 sync_complete 时推进游标
+            if (!notes.isEmpty() && batchMinId <= roundMaxReceivedId && !checkpointsDisabled) {
+                checkpointsDisabled = true;
+                logger.warning("Batch " + batchId + " ids are not ascending; per-batch checkpoints disabled for this round");
+            }
+            roundMaxReceivedId = Math.max(roundMaxReceivedId, batchMaxId);
+            checkpointId = checkpointsDisabled ? -1L : batchMaxId;
         }
 
-        // Decrypt + DB write on dedicated thread (avoid blocking OkHttp WebSocket thread)
+        // Decrypt in parallel, then DB write on the ordered writer thread (avoid blocking OkHttp WebSocket thread)
         try {
-            cryptoExecutor.submit(() -> {
+            // 懒解密模式：批量同步只落库密文，由 LocalCacheService 按需解密/空闲回填
+            boolean lazyDecrypt = SettingsService.getInstance().isLazyDecryptionEnabled();
+            long submitNanos = System.nanoTime();
+            AtomicLong lastDecryptedNanos = new AtomicLong(submitNanos);
+            syncPipeline.submit(notes, note -> {
+                long start = System.nanoTime();
+                LocalCacheService.NoteData decoded = decodeSyncNote(note, lazyDecrypt);
+                long end = System.nanoTime();
+                syncMetrics.recordDecrypt(end - start);
+                lastDecryptedNanos.accumulateAndGet(end, Math::max);
+                return decoded;
+            }, batchNotes -> {
                 boolean batchChangedData = false;
                 boolean batchWriteFailed = false;
+                long writeStartNanos = System.nanoTime();
+                long decryptNanos = lastDecryptedNanos.get() - submitNanos;
+                long queueWaitNanos = slotWaitNanos + Math.max(0, writeStartNanos - lastDecryptedNanos.get());
+                syncMetrics.recordQueueWait(queueWaitNanos);
+                long dbTxNanos = 0;
                 try {
-                    List<LocalCacheService.NoteData> batchNotes = new ArrayList<>();
-                    for (JsonObject note : noteSnapshots) {
+                    // 保持到达顺序：先提交此前缓冲的实时笔记
+                    realtimeQueue.flush();
+                    long checkpoint = isCheckpointContiguous(currentSyncEpoch) ? checkpointId : -1L;
+                    if (!batchNotes.isEmpty() || checkpoint >= 0) {
                         try {
-                            long id = note.getLong("id");
-                            String encryptedContent = note.getString("content");
-                            String channel = note.getString("channel");
-                            String createdAt = note.getString("created_at");
-
-                            String decryptedContent;
-                            try {
-                                decryptedContent = cryptoService.decrypt(encryptedContent);
-                            } catch (Exception e) {
-                                logger.warning("Failed to decrypt note " + id + ": " + e.getMessage()
-                                        + ", storing encrypted content");
-                                decryptedContent = encryptedContent;
+                            // 笔记与检查点同一事务提交：断线后从最后一个连续写成功的批次继续
+                            long txStart = System.nanoTime();
+                            localCache.applySyncBatch(batchNotes, checkpoint);
+                            dbTxNanos = System.nanoTime() - txStart;
+                            syncMetrics.recordDbTransaction(batchNotes.size(), dbTxNanos);
+                            batchChangedData = !batchNotes.isEmpty();
+                            if (checkpoint > lastSyncId) {
+                                lastSyncId = checkpoint;
                             }
-
-                            batchNotes.add(new LocalCacheService.NoteData(
-                                    id, decryptedContent, channel, createdAt, encryptedContent));
-                        } catch (Exception e) {
-                            logger.warning("Failed to parse note: " + e.getMessage());
-                        }
-                    }
-
-                    if (!batchNotes.isEmpty()) {
-                        try {
-                            localCache.batchInsertNotes(batchNotes, false);
-                            batchChangedData = true;
-                            logger.info("Batch " + batchId + ": inserted " + batchNotes.size() + " notes to DB");
+                            logger.info("Batch " + batchId + ": inserted " + batchNotes.size() + " notes to DB"
+                                    + (checkpoint >= 0 ? ", checkpoint=" + checkpoint : ""));
                         } catch (Exception e) {
                             batchWriteFailed = true;
                             logger.warning("Failed to insert batch " + batchId + ": " + e.getMessage());
                         }
                     }
                 } finally {
+                    batchEvent.end();
+                    if (batchEvent.shouldCommit()) {
+                        batchEvent.batchId = batchId;
+                        batchEvent.notes = batchNotes.size();
+                        batchEvent.bytes = messageBytes;
+                        batchEvent.parseNanos = parseNanos;
+                        batchEvent.decryptNanos = decryptNanos;
+                        batchEvent.queueWaitNanos = queueWaitNanos;
+                        batchEvent.dbTxNanos = dbTxNanos;
+                        batchEvent.commit();
+                    }
+                    slot.release();
                     onBatchWriteFinished(currentSyncEpoch, batchChangedData, batchWriteFailed);
                 }
+            }).exceptionally(e -> {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException) {
+                    // Writer was shut down before the stage ran — release the pending write slot
+                    logger.warning("Batch " + batchId + " write stage rejected: sync pipeline is shutting down");
+                    slot.release();
+                    onBatchWriteFinished(currentSyncEpoch, false, true);
+                }
+                return null;
             });
         } catch (RejectedExecutionException e) {
-            logger.warning("Rejected batch " + batchId + " because crypto executor is shutting down");
+            logger.warning("Rejected batch " + batchId + " because sync pipeline is shutting down");
+            slot.release();
             onBatchWriteFinished(currentSyncEpoch, false, true);
         }
 
@@ -539,43 +660,275 @@ public class WebSocketClientService {
             logger.warning("note object is null");
             return;
         }
+        SyncBatchParser.SyncNote syncNote = SyncBatchParser.SyncNote.fromJson(noteJson);
+        if (syncNote == null) {
+            logger.warning("Failed to parse note: " + noteJson);
+            return;
+        }
 
-        // Decrypt + DB write on dedicated thread (avoid blocking OkHttp WebSocket thread)
-        cryptoExecutor.submit(() -> {
+        // Decrypt on the pipeline pool, then DB write on the ordered writer thread
+        try {
+            syncPipeline.submit(List.of(syncNote), note -> decodeSyncNote(note, false), decoded -> {
+                if (!decoded.isEmpty()) {
+                    realtimeQueue.add(decoded.get(0));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warning("Rejected realtime update because sync pipeline is shutting down");
+        }
+    }
+
+    /**
+     * Group commit of buffered realtime notes (DB-writer thread): one transaction for the notes
+     * and the advanced lastSyncId, one local-cache change notification.
+     */
+    private void flushRealtimeNotes(List<LocalCacheService.NoteData> notes) throws SQLException {
+        long maxId = lastSyncId;
+        for (LocalCacheService.NoteData note : notes) {
+            maxId = Math.max(maxId, note.id);
+        }
+        boolean advanceCursor = maxId > lastSyncId;
+        localCache.applyRealtimeNotes(notes, advanceCursor ? maxId : -1L);
+        if (advanceCursor) {
+            lastSyncId = maxId;
+            logger.info("Updated lastSyncId to " + lastSyncId + " after realtime update");
+        }
+
+        for (LocalCacheService.NoteData note : notes) {
+            notifyRealtimeUpdate(note.id, note.content);
+        }
+        logger.info("Realtime update committed " + notes.size() + " note(s)");
+    }
+
+    /**
+     * Decrypt one note from a sync_batch / realtime_update payload (runs on the decrypt pool).
+     * Undecryptable content is kept as-is so the note is still cached; unparseable notes return null.
+     * With {@code lazy} the note is returned encrypted-only (content == null) and decrypted on read.
+     */
+    private LocalCacheService.NoteData decodeSyncNote(SyncBatchParser.SyncNote note, boolean lazy) {
+        try {
+            long id = note.id();
+            String encryptedContent = note.content();
+            String channel = note.channel();
+            String createdAt = note.createdAt();
+
+            if (lazy && encryptedContent != null) {
+                return new LocalCacheService.NoteData(id, null, channel, createdAt, encryptedContent);
+            }
+
+            String decryptedContent;
             try {
-                long id = noteJson.getLong("id");
-                String encryptedContent = noteJson.getString("content");
-                String channel = noteJson.getString("channel");
-                String createdAt = noteJson.getString("created_at");
+                decryptedContent = cryptoService.decrypt(encryptedContent);
+            } catch (Exception e) {
+                logger.warning("Failed to decrypt note " + id + ": " + e.getMessage()
+                        + ", storing encrypted content");
+                decryptedContent = encryptedContent;
+            }
 
-                logger.info("Parsed note - id: " + id + ", channel: " + channel + ", createdAt: " + createdAt);
+            return new LocalCacheService.NoteData(id, decryptedContent, channel, createdAt, encryptedContent);
+        } catch (Exception e) {
+            logger.warning("Failed to parse note: " + e.getMessage());
+            return null;
+        }
+    }
 
-                String decryptedContent;
+    /**
+     * Anti-entropy check instead of a full resync: send per-bucket hashes of the local cache (ids up to the
+     * current cursor, {@link SyncRangeHash#DEFAULT_BUCKET_SIZE} ids per bucket). The server answers with one
+     * reconcile_range per mismatching bucket, carrying its full contents for that id range, then
+     * reconcile_complete. Local rows the server no longer has are deleted; the sync cursor is not moved.
+     *
+     * @return completes when every fetched range has been written, or fails on disconnect / write error, or
+     * when the server sends nothing for {@link #RECONCILE_IDLE_TIMEOUT_SEC} seconds
+     */
+    public CompletableFuture<ReconcileResult> reconcile() {
+        if (!isConnected.get() || webSocket == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
+        }
+        if (isSyncing.get()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Sync in progress"));
+        }
+        long epoch;
+        synchronized (syncStateLock) {
+            epoch = syncEpoch;
+        }
+        ReconcileSession session = new ReconcileSession(epoch, lastSyncId);
+        if (!reconcileSession.compareAndSet(null, session)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Reconcile already in progress"));
+        }
+
+        // 全表扫描 + 哈希不放在调用方（通常是 UI）线程
+        Thread worker = new Thread(() -> {
+            try {
+                List<SyncRangeHash.Bucket> buckets =
+                        localCache.computeRangeHashes(SyncRangeHash.DEFAULT_BUCKET_SIZE, session.upToId);
+                JsonArray bucketArray = new JsonArray();
+                for (SyncRangeHash.Bucket bucket : buckets) {
+                    bucketArray.add(new JsonObject()
+                            .put("start", bucket.start())
+                            .put("count", bucket.count())
+                            .put("hash", bucket.hash()));
+                }
+                String request = new JsonObject()
+                        .put("type", "reconcile_request")
+                        .put("bucket_size", SyncRangeHash.DEFAULT_BUCKET_SIZE)
+                        .put("up_to_id", session.upToId)
+                        .put("buckets", bucketArray)
+                        .encode();
+
+                WebSocket ws = webSocket;
+                if (ws == null || !isSyncEpochCurrent(session.epoch) || !ws.send(request)) {
+                    failReconcile(session, new IllegalStateException("Connection lost before reconcile request was sent"));
+                    return;
+                }
+                session.bucketsSent = buckets.size();
+                // 本地哈希计算耗时不计入服务器的响应时间
+                session.lastActivityNanos = System.nanoTime();
+                int requestBytes = utf8Length(request);
+                session.bytesSent.addAndGet(requestBytes);
+                logger.info("Sent reconcile_request: " + buckets.size() + " bucket(s) up to id " + session.upToId
+                        + ", " + requestBytes + " bytes");
+            } catch (Exception e) {
+                failReconcile(session, e);
+            }
+        }, "WebSocket-Reconcile");
+        worker.setDaemon(true);
+        worker.start();
+        scheduleReconcileTimeout(session, RECONCILE_IDLE_TIMEOUT_SEC);
+        return session.future;
+    }
+
+    /**
+     * Fail {@code session} once the server has been silent for {@link #RECONCILE_IDLE_TIMEOUT_SEC} seconds;
+     * re-arms itself while reconcile_range messages keep arriving.
+     */
+    private void scheduleReconcileTimeout(ReconcileSession session, long delaySec) {
+        CompletableFuture.delayedExecutor(delaySec, TimeUnit.SECONDS).execute(() -> {
+            if (session.future.isDone() || reconcileSession.get() != session) {
+                return;
+            }
+            long idleSec = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - session.lastActivityNanos);
+            if (idleSec >= RECONCILE_IDLE_TIMEOUT_SEC) {
+                failReconcile(session, new TimeoutException(
+                        "No reconcile response from server for " + RECONCILE_IDLE_TIMEOUT_SEC + "s"));
+            } else {
+                scheduleReconcileTimeout(session, RECONCILE_IDLE_TIMEOUT_SEC - idleSec);
+            }
+        });
+    }
+
+    private void handleReconcileRange(JsonObject json, int messageBytes) {
+        ReconcileSession session = reconcileSession.get();
+        if (session == null || !isSyncEpochCurrent(session.epoch)) {
+            logger.warning("Ignoring reconcile_range without an active reconcile");
+            return;
+        }
+        session.lastActivityNanos = System.nanoTime();
+        session.bytesReceived.addAndGet(messageBytes);
+
+        long rangeStart = json.getLong("range_start", -1L);
+        long rangeEnd = json.getLong("range_end", -1L);
+        if (rangeStart < 0 || rangeEnd <= rangeStart) {
+            failReconcile(session, new IllegalArgumentException("Invalid reconcile range [" + rangeStart + ", " + rangeEnd + ")"));
+            return;
+        }
+
+        List<SyncBatchParser.SyncNote> notes = new ArrayList<>();
+        Set<Long> serverIds = new HashSet<>();
+        JsonArray noteArray = json.getJsonArray("notes", new JsonArray());
+        for (int i = 0; i < noteArray.size(); i++) {
+            Object item = noteArray.getValue(i);
+            SyncBatchParser.SyncNote note = item instanceof JsonObject
+                    ? SyncBatchParser.SyncNote.fromJson((JsonObject) item) : null;
+            if (note == null || note.id() < rangeStart || note.id() >= rangeEnd) {
+                logger.warning("Skipping invalid note in reconcile range [" + rangeStart + ", " + rangeEnd + ")");
+                continue;
+            }
+            notes.add(note);
+            serverIds.add(note.id());
+        }
+
+        try {
+            boolean lazyDecrypt = SettingsService.getInstance().isLazyDecryptionEnabled();
+            syncPipeline.submit(notes, note -> decodeSyncNote(note, lazyDecrypt), decoded -> {
+                if (session.future.isDone()) {
+                    return;
+                }
                 try {
-                    decryptedContent = cryptoService.decrypt(encryptedContent);
-                    logger.info("Decrypted content: " + decryptedContent);
+                    // 解码失败的笔记不在 decoded 里，但仍按服务器 id 集合保留，不误删本地旧行
+                    int deleted = localCache.replaceRange(rangeStart, rangeEnd, serverIds, decoded);
+                    session.ranges.incrementAndGet();
+                    session.notesFetched.addAndGet(decoded.size());
+                    session.notesDeleted.addAndGet(deleted);
+                    logger.info("Reconciled range [" + rangeStart + ", " + rangeEnd + "): upserted "
+                            + decoded.size() + ", deleted " + deleted);
                 } catch (Exception e) {
-                    logger.warning("Failed to decrypt note " + id + ": " + e.getMessage() + ", storing encrypted content");
-                    decryptedContent = encryptedContent;
+                    failReconcile(session, e);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            failReconcile(session, e);
+        }
+    }
 
-                LocalCacheService.NoteData note = new LocalCacheService.NoteData(
-                        id, decryptedContent, channel, createdAt, encryptedContent);
-                localCache.insertNote(note);
+    private void handleReconcileComplete(JsonObject json, int messageBytes) {
+        ReconcileSession session = reconcileSession.get();
+        if (session == null || !isSyncEpochCurrent(session.epoch)) {
+            logger.warning("Ignoring reconcile_complete without an active reconcile");
+            return;
+        }
+        session.lastActivityNanos = System.nanoTime();
+        session.bytesReceived.addAndGet(messageBytes);
 
-                if (id > lastSyncId) {
-                    lastSyncId = id;
-                    localCache.updateLastSyncId(lastSyncId);
-                    logger.info("Updated lastSyncId to " + lastSyncId + " after realtime update");
+        try {
+            // 写线程按提交顺序执行：排在所有 reconcile_range 写入之后
+            syncPipeline.runOnWriter(() -> {
+                if (!reconcileSession.compareAndSet(session, null)) {
+                    return;
                 }
+                ReconcileResult result = new ReconcileResult(
+                        session.bucketsSent,
+                        session.ranges.get(),
+                        session.notesFetched.get(),
+                        session.notesDeleted.get(),
+                        session.bytesSent.get(),
+                        session.bytesReceived.get(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - session.startNanos));
+                if (result.mismatchedRanges() > 0) {
+                    localCache.notifyBatchSyncApplied();
+                }
+                logger.info("Reconcile complete: " + result);
+                session.future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            failReconcile(session, e);
+        }
+    }
 
-                notifyRealtimeUpdate(id, decryptedContent);
-                logger.info("Realtime update for note " + id + " completed successfully");
-            } catch (Exception e) {
-                logger.warning("Failed to process realtime update: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
+    private void failReconcile(ReconcileSession session, Throwable error) {
+        if (reconcileSession.compareAndSet(session, null)) {
+            logger.warning("Reconcile failed: " + error.getMessage());
+            session.future.completeExceptionally(error);
+        }
+    }
+
+    private static final class ReconcileSession {
+        final CompletableFuture<ReconcileResult> future = new CompletableFuture<>();
+        final long epoch;
+        final long upToId;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger ranges = new AtomicInteger();
+        final AtomicInteger notesFetched = new AtomicInteger();
+        final AtomicInteger notesDeleted = new AtomicInteger();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+        volatile int bucketsSent;
+        volatile long lastActivityNanos = startNanos;
+
+        ReconcileSession(long epoch, long upToId) {
+            this.epoch = epoch;
+            this.upToId = upToId;
+        }
     }
 
     private void handleNewNoteAck(JsonObject json) {
@@ -738,6 +1091,12 @@ public class WebSocketClientService {
             syncEpoch++;
             resetSyncStateLocked();
         }
+        batchFlowControl.reset();
+        syncMetrics.abandonRound();
+        ReconcileSession session = reconcileSession.get();
+        if (session != null) {
+            failReconcile(session, new IllegalStateException("Connection closed during reconcile"));
+        }
         isSyncing.set(false);
         isConnected.set(false);
         isConnecting.set(false);
@@ -790,6 +1149,60 @@ public class WebSocketClientService {
         }
     }
 
+    private boolean isSyncEpochCurrent(long epoch) {
+        synchronized (syncStateLock) {
+            return epoch == syncEpoch;
+        }
+    }
+
+    /**
+     * flow_control 消息：pause 让服务器暂停发送 sync_batch，resume 恢复（不支持的服务器忽略即可，读线程阻塞仍然兜底）
+     */
+    private void sendFlowControl(String action) {
+        WebSocket ws = webSocket;
+        if (ws == null) {
+            return;
+        }
+        JsonObject message = new JsonObject()
+                .put("type", "flow_control")
+                .put("action", action)
+                .put("in_flight", batchFlowControl.depth());
+        if (ws.send(message.encode())) {
+            logger.info("Sent flow_control " + action + " (in-flight batches=" + batchFlowControl.depth() + ")");
+        }
+    }
+
+    /**
+     * Sync batches received but not yet written to the local DB.
+     */
+    public int getSyncQueueDepth() {
+        return batchFlowControl.depth();
+    }
+
+    /**
+     * One-line backpressure summary (depth, high-water mark, pauses, reader blocked time).
+     */
+    public String getSyncQueueSummary() {
+        return batchFlowControl.summary();
+    }
+
+    /**
+     * Per-stage sync timings and counters since this service was created.
+     */
+    public SyncMetrics.Snapshot getSyncMetrics() {
+        return syncMetrics.snapshot();
+    }
+
+    /**
+     * Called on the DB-writer thread before a batch write: the batch may carry a checkpoint only if it
+     * still belongs to the current round and every earlier batch of the round was written successfully.
+     */
+    private boolean isCheckpointContiguous(long batchSyncEpoch) {
+        synchronized (syncStateLock) {
+            return batchSyncEpoch == syncEpoch && !syncWriteFailed && !checkpointsDisabled;
+        }
+    }
+
     private void finalizeSyncRound(long batchSyncEpoch) {
         final int totalSynced;
         final long newLastSyncId;
@@ -815,13 +1228,16 @@ public class WebSocketClientService {
                 this.lastSyncId = newLastSyncId;
                 logger.info("Updated lastSyncId to: " + newLastSyncId);
             } else if (!shouldAdvanceSyncCursor) {
-                logger.warning("Sync round had batch write failures; keeping previous lastSyncId so the server can replay");
+                logger.warning("Sync round had batch write failures; keeping lastSyncId at the last contiguous checkpoint ("
+                        + lastSyncId + ") so the server can replay the rest");
             }
         } catch (Exception e) {
             logger.warning("Failed to update lastSyncId on sync complete: " + e.getMessage());
         }
 
         isSyncing.set(false);
+        syncMetrics.recordRoundFinished(totalSynced);
+        logger.info(syncMetrics.summary());
 
         if (shouldNotifyBatchReload) {
             localCache.notifyBatchSyncApplied();
@@ -840,6 +1256,8 @@ public class WebSocketClientService {
         completedSyncLastSyncId = -1L;
         syncDataChanged = false;
         syncWriteFailed = false;
+        roundMaxReceivedId = -1L;
+        checkpointsDisabled = false;
     }
 
     /**
@@ -870,8 +1288,9 @@ public class WebSocketClientService {
             reconnectScheduler = null;
         }
 
-        // 关闭解密专用线程
-        cryptoExecutor.shutdownNow();
+        // 先提交缓冲中的实时笔记，再关闭解密池和写库线程
+        realtimeQueue.shutdown(2000);
+        syncPipeline.shutdownNow();
 
         synchronized (syncStateLock) {
             syncEpoch++;
@@ -0,0 +1,314 @@
+package cn.keevol.keenotes.mobilefx.test;
+
+import cn.keevol.keenotes.mobilefx.SyncBatchParser.SyncNote;
+import cn.keevol.keenotes.mobilefx.SyncRangeHash;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地同步服务器替身（Vert.x WebSocket），实现 WebSocketClientService 使用的协议：
+ * handshake → sync_batch* → sync_complete，new_note / realtime_update，ping/pong，
+ * flow_control（pause/resume）以及 reconcile_request → reconcile_range* → reconcile_complete。
+ * 笔记内容由调用方预先加密（见 SyncLoadBenchmark），服务器只保存密文。
+ */
+public class LocalSyncServer implements AutoCloseable {
+
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Vertx vertx = Vertx.vertx();
+    private final String token;
+    private final int batchSize;
+    private final NavigableMap<Long, SyncNote> notes = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong pauses = new AtomicLong();
+
+    private HttpServer server;
+
+    public LocalSyncServer(String token, int batchSize) {
+        this.token = token;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 启动监听（port 为 0 时随机端口），返回实际端口
+     */
+    public int start(int port) throws Exception {
+        HttpServerOptions options = new HttpServerOptions()
+                .setHost("127.0.0.1")
+                .setPort(port)
+                .setMaxWebSocketMessageSize(16 * 1024 * 1024);
+        server = vertx.createHttpServer(options)
+                .webSocketHandler(this::accept)
+                .listen()
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        return server.actualPort();
+    }
+
+    @Override
+    public void close() throws ExecutionException, TimeoutException {
+        try {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 追加已加密的笔记（id 递增分配），不推送给已连接的客户端
+     */
+    public void addNotes(Collection<String> encryptedContents) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (String content : encryptedContents) {
+            long id = nextId.getAndIncrement();
+            notes.put(id, new SyncNote(id, content, id % 2 == 0 ? "desktop" : "mobile",
+                    base.plusMinutes(id).format(CREATED_AT)));
+        }
+    }
+
+    /**
+     * 新增一条笔记并以 realtime_update 推送给所有客户端
+     */
+    public long publish(String encryptedContent) {
+        long id = nextId.getAndIncrement();
+        SyncNote note = new SyncNote(id, encryptedContent, "desktop", LocalDateTime.now().format(CREATED_AT));
+        notes.put(id, note);
+        String message = new JsonObject().put("type", "realtime_update").put("note", toJson(note)).encode();
+        vertx.runOnContext(v -> sessions.forEach(session -> session.send(message)));
+        return id;
+    }
+
+    /**
+     * 直接修改服务器端数据（模拟另一台设备的改动），用于对账测试
+     */
+    public void replaceContent(long id, String encryptedContent) {
+        SyncNote old = notes.get(id);
+        if (old != null) {
+            notes.put(id, new SyncNote(id, encryptedContent, old.channel(), old.createdAt()));
+        }
+    }
+
+    public void clear() {
+        notes.clear();
+        nextId.set(1);
+    }
+
+    public int noteCount() {
+        return notes.size();
+    }
+
+    public long lastId() {
+        return notes.isEmpty() ? -1L : notes.lastKey();
+    }
+
+    public List<SyncRangeHash.Bucket> rangeHashes(int bucketSize, long upToId) {
+        SyncRangeHash.Builder builder = new SyncRangeHash.Builder(bucketSize);
+        for (SyncNote note : notes.headMap(upToId, true).values()) {
+            builder.add(note.id(), note.content());
+        }
+        return builder.finish();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    public long flowControlPauses() {
+        return pauses.get();
+    }
+
+    public void resetCounters() {
+        bytesSent.set(0);
+        pauses.set(0);
+    }
+
+    private void accept(ServerWebSocket ws) {
+        if (!"/ws".equals(ws.path())) {
+            ws.reject(404);
+            return;
+        }
+        if (!("Bearer " + token).equals(ws.headers().get("Authorization"))) {
+            ws.reject(401);
+            return;
+        }
+        Session session = new Session(ws);
+        sessions.add(session);
+        ws.closeHandler(v -> sessions.remove(session));
+        ws.textMessageHandler(session::onMessage);
+    }
+
+    private static JsonObject toJson(SyncNote note) {
+        return new JsonObject()
+                .put("id", note.id())
+                .put("content", note.content())
+                .put("channel", note.channel())
+                .put("created_at", note.createdAt());
+    }
+
+    /**
+     * 单个连接的状态，所有回调都在同一个 event loop 上执行
+     */
+    private final class Session {
+        private final ServerWebSocket ws;
+        private List<SyncNote> pending = List.of();
+        private int cursor;
+        private int batchId;
+        private int totalBatches;
+        private boolean paused;
+        private boolean syncing;
+
+        Session(ServerWebSocket ws) {
+            this.ws = ws;
+        }
+
+        void send(String message) {
+            bytesSent.addAndGet(message.length());
+            ws.writeTextMessage(message);
+        }
+
+        void onMessage(String text) {
+            JsonObject json = new JsonObject(text);
+            switch (json.getString("type", "")) {
+                case "handshake":
+                    startSync(json.getLong("last_sync_id", -1L));
+                    break;
+                case "flow_control":
+                    if ("pause".equals(json.getString("action"))) {
+                        paused = true;
+                        pauses.incrementAndGet();
+                    } else {
+                        paused = false;
+                        pump();
+                    }
+                    break;
+                case "ping":
+                    send("{\"type\":\"pong\"}");
+                    break;
+                case "new_note":
+                    onNewNote(json);
+                    break;
+                case "reconcile_request":
+                    onReconcile(json);
+                    break;
+                default:
+                    // pong 等无需处理
+            }
+        }
+
+        private void startSync(long lastSyncId) {
+            pending = new ArrayList<>(notes.tailMap(lastSyncId, false).values());
+            cursor = 0;
+            batchId = 0;
+            totalBatches = (pending.size() + batchSize - 1) / batchSize;
+            paused = false;
+            syncing = true;
+            pump();
+        }
+
+        /**
+         * 按批发送，直到客户端 pause 或写队列满（等 drain 后继续）
+         */
+        private void pump() {
+            while (syncing && !paused && cursor < pending.size()) {
+                if (ws.writeQueueFull()) {
+                    ws.drainHandler(v -> pump());
+                    return;
+                }
+                int end = Math.min(cursor + batchSize, pending.size());
+                JsonArray array = new JsonArray();
+                for (SyncNote note : pending.subList(cursor, end)) {
+                    array.add(toJson(note));
+                }
+                cursor = end;
+                batchId++;
+                send(new JsonObject()
+                        .put("type", "sync_batch")
+                        .put("batch_id", batchId)
+                        .put("total_batches", totalBatches)
+                        .put("notes", array)
+                        .encode());
+            }
+            if (syncing && cursor >= pending.size()) {
+                syncing = false;
+                long last = pending.isEmpty() ? -1L : pending.get(pending.size() - 1).id();
+                send(new JsonObject()
+                        .put("type", "sync_complete")
+                        .put("total_synced", pending.size())
+                        .put("last_sync_id", last)
+                        .encode());
+                pending = List.of();
+            }
+        }
+
+        private void onNewNote(JsonObject json) {
+            long id = nextId.getAndIncrement();
+            SyncNote note = new SyncNote(id, json.getString("content"), json.getString("channel", "mobile"),
+                    LocalDateTime.now().format(CREATED_AT));
+            notes.put(id, note);
+            send(new JsonObject().put("type", "new_note_ack").put("id", id).put("success", true).encode());
+            String update = new JsonObject().put("type", "realtime_update").put("note", toJson(note)).encode();
+            sessions.forEach(session -> session.send(update));
+        }
+
+        private void onReconcile(JsonObject json) {
+            int bucketSize = json.getInteger("bucket_size", SyncRangeHash.DEFAULT_BUCKET_SIZE);
+            long upToId = json.getLong("up_to_id", Long.MAX_VALUE);
+            Map<Long, SyncRangeHash.Bucket> client = new TreeMap<>();
+            JsonArray buckets = json.getJsonArray("buckets", new JsonArray());
+            for (int i = 0; i < buckets.size(); i++) {
+                JsonObject b = buckets.getJsonObject(i);
+                client.put(b.getLong("start"), new SyncRangeHash.Bucket(b.getLong("start"), b.getInteger("count"), b.getString("hash")));
+            }
+            Map<Long, SyncRangeHash.Bucket> local = new TreeMap<>();
+            for (SyncRangeHash.Bucket bucket : rangeHashes(bucketSize, upToId)) {
+                local.put(bucket.start(), bucket);
+            }
+
+            TreeSet<Long> starts = new TreeSet<>(client.keySet());
+            starts.addAll(local.keySet());
+            int ranges = 0;
+            for (long start : starts) {
+                SyncRangeHash.Bucket mine = local.get(start);
+                if (mine != null && mine.equals(client.get(start))) {
+                    continue;
+                }
+                long end = Math.min(start + bucketSize, upToId == Long.MAX_VALUE ? Long.MAX_VALUE : upToId + 1);
+                JsonArray array = new JsonArray();
+                for (SyncNote note : notes.subMap(start, true, end, false).values()) {
+                    array.add(toJson(note));
+                }
+                send(new JsonObject()
+                        .put("type", "reconcile_range")
+                        .put("range_start", start)
+                        .put("range_end", end)
+                        .put("notes", array)
+                        .encode());
+                ranges++;
+            }
+            send(new JsonObject().put("type", "reconcile_complete").put("ranges", ranges).encode());
+        }
+    }
+}
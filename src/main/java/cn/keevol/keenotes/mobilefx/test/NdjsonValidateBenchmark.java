@@ -0,0 +1,92 @@
+package cn.keevol.keenotes.mobilefx.test;
+
+import cn.keevol.keenotes.mobilefx.DataImportService;
+import cn.keevol.keenotes.mobilefx.NdjsonValidator;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * NDJSON 导入文件校验：串行扫描 vs 按行边界分区的 ForkJoin 并行校验
+ * 用法：java ... NdjsonValidateBenchmark [lines=2000000] [runs=3]
+ * 除了耗时，还检查两条路径对有效文件、靠前错误和靠后错误给出完全相同的 ValidationResult（含行号）
+ */
+public class NdjsonValidateBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        Path valid = Files.createTempFile("keenotes-validate", ".ndjson");
+        Path lateError = Files.createTempFile("keenotes-validate-late", ".ndjson");
+        Path earlyError = Files.createTempFile("keenotes-validate-early", ".ndjson");
+        try {
+            generate(valid, lines, -1);
+            generate(lateError, lines, lines - lines / 50);
+            generate(earlyError, lines, lines / 50);
+            long size = Files.size(valid);
+
+            System.out.println("=== NDJSON 校验：串行 vs 并行 ===");
+            System.out.printf("lines=%,d size=%,dMB parallelism=%d runs=%d%n",
+                    lines, size >> 20, pool.getParallelism(), runs);
+
+            for (Path file : new Path[]{valid, lateError, earlyError}) {
+                DataImportService.ValidationResult serial = NdjsonValidator.validateSerial(file);
+                DataImportService.ValidationResult parallel = NdjsonValidator.validateParallel(file, pool);
+                System.out.println(file.getFileName() + ": " + serial
+                        + (serial.equals(parallel) ? " (parallel identical)" : " MISMATCH parallel=" + parallel));
+            }
+
+            long serialNanos = Long.MAX_VALUE;
+            long parallelNanos = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                NdjsonValidator.validateSerial(valid);
+                serialNanos = Math.min(serialNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                NdjsonValidator.validateParallel(valid, pool);
+                parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+            }
+            System.out.printf("serial:   %,dms (%.0f MB/s)%n", serialNanos / 1_000_000, mbPerSecond(size, serialNanos));
+            System.out.printf("parallel: %,dms (%.0f MB/s) speedup=%.2fx%n", parallelNanos / 1_000_000,
+                    mbPerSecond(size, parallelNanos), (double) serialNanos / parallelNanos);
+        } finally {
+            Files.deleteIfExists(valid);
+            Files.deleteIfExists(lateError);
+            Files.deleteIfExists(earlyError);
+        }
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    /**
+     * 与导出格式一致的笔记行，偶尔夹杂空行；{@code errorAt} 行缺少 channel 字段（-1 表示全部有效）
+     */
+    private static void generate(Path file, int lines, int errorAt) throws Exception {
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                StringBuilder content = new StringBuilder("导入笔记 #").append(i).append(' ');
+                int length = 40 + random.nextInt(160);
+                while (content.length() < length) {
+                    content.append((char) ('a' + random.nextInt(26)));
+                }
+                writer.write("{\"content\":\"" + content + "\"");
+                if (i != errorAt) {
+                    writer.write(",\"channel\":\"" + (i % 2 == 0 ? "desktop" : "mobile") + "\"");
+                }
+                writer.write(",\"created_at\":\"2024-01-01 08:00:00\",\"encrypted\":false}\n");
+                if (i % 997 == 0) {
+                    writer.write("\n");
+                }
+            }
+        }
+    }
+}
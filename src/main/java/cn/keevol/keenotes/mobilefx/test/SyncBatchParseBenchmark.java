@@ -0,0 +1,99 @@
+package cn.keevol.keenotes.mobilefx.test;
+
+import cn.keevol.keenotes.mobilefx.SyncBatchParser;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * sync_batch 解析的每条笔记分配量对比：Vert.x JsonObject 树 + 快照列表 vs 流式 SyncBatchParser
+ * 用法：java ... SyncBatchParseBenchmark [notesPerBatch] [encryptedBytesPerNote]
+ */
+public class SyncBatchParseBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int notesPerBatch = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int payloadBytes = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        String message = buildBatch(notesPerBatch, payloadBytes);
+
+        System.out.println("=== sync_batch 解析分配量 ===");
+        System.out.println("notes/batch=" + notesPerBatch + " encryptedBytes/note=" + payloadBytes
+                + " message=" + message.length() + " chars");
+
+        long treeBytes = measure(message, SyncBatchParseBenchmark::parseWithTree);
+        long streamBytes = measure(message, SyncBatchParseBenchmark::parseStreaming);
+
+        System.out.printf("JsonObject + snapshots: %,d bytes/note%n", treeBytes / notesPerBatch);
+        System.out.printf("SyncBatchParser:        %,d bytes/note%n", streamBytes / notesPerBatch);
+    }
+
+    private interface Parse {
+        int run(String message) throws Exception;
+    }
+
+    /**
+     * 旧路径：整条消息解析成 JsonObject，再把每条 note 快照成 List&lt;JsonObject&gt;
+     */
+    private static int parseWithTree(String message) {
+        JsonObject json = new JsonObject(message);
+        JsonArray notes = json.getJsonArray("notes");
+        List<JsonObject> snapshots = new ArrayList<>(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            snapshots.add(notes.getJsonObject(i));
+        }
+        return snapshots.size();
+    }
+
+    private static int parseStreaming(String message) throws Exception {
+        return SyncBatchParser.parseBatch(message).notes().size();
+    }
+
+    /**
+     * 平均每批分配字节数（当前线程）
+     */
+    private static long measure(String message, Parse parse) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += parse.run(message);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += parse.run(message);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return allocated / MEASURED_ROUNDS;
+    }
+
+    private static String buildBatch(int count, int payloadBytes) {
+        Random random = new Random(42);
+        JsonArray notes = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[payloadBytes];
+            random.nextBytes(payload);
+            notes.add(new JsonObject()
+                    .put("id", 100_000L + i)
+                    .put("content", Base64.getEncoder().encodeToString(payload))
+                    .put("channel", i % 2 == 0 ? "desktop" : "mobile")
+                    .put("created_at", "2025-01-01 12:00:00"));
+        }
+        return new JsonObject()
+                .put("type", "sync_batch")
+                .put("batch_id", 1)
+                .put("total_batches", 1)
+                .put("notes", notes)
+                .encode();
+    }
+}
@@ -0,0 +1,211 @@
+package cn.keevol.keenotes.mobilefx.test;
+
+import cn.keevol.keenotes.mobilefx.AppLogger;
+import cn.keevol.keenotes.mobilefx.CryptoService;
+import cn.keevol.keenotes.mobilefx.LocalCacheService;
+import cn.keevol.keenotes.mobilefx.SettingsService;
+import cn.keevol.keenotes.mobilefx.SyncRangeHash;
+import cn.keevol.keenotes.mobilefx.WebSocketClientService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * 端到端同步压测：LocalSyncServer 替身 + 真实 WebSocketClientService + 临时目录下的 LocalCacheService
+ * 用法：java ... SyncLoadBenchmark [counts=1000,10000,100000] [--lazy] [--batch=500] [--reconcile] [--verbose]
+ * 每个规模从空库全量同步，输出耗时、堆峰值、notes/s 以及各阶段指标；--reconcile 再制造少量差异后做区间哈希对账
+ */
+public class SyncLoadBenchmark {
+
+    private static final String TOKEN = "local-bench-token";
+    private static final String PASSWORD = "local-bench-password";
+    private static final int CONTENT_CHARS = 280;
+    private static final long SYNC_TIMEOUT_MINUTES = 30;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> counts = List.of(1_000, 10_000, 100_000);
+        boolean lazy = false;
+        boolean reconcile = false;
+        boolean verbose = false;
+        int batchSize = 500;
+        for (String arg : args) {
+            if (arg.equals("--lazy")) {
+                lazy = true;
+            } else if (arg.equals("--reconcile")) {
+                reconcile = true;
+            } else if (arg.equals("--verbose")) {
+                verbose = true;
+            } else if (arg.startsWith("--batch=")) {
+                batchSize = Integer.parseInt(arg.substring("--batch=".length()));
+            } else {
+                counts = new ArrayList<>();
+                for (String c : arg.split(",")) {
+                    counts.add(Integer.parseInt(c.trim()));
+                }
+            }
+        }
+
+        // 设置与数据库都落在临时 user.home，不碰真实配置
+        Path home = Files.createTempDirectory("keenotes-bench");
+        System.setProperty("user.home", home.toString());
+        if (!verbose) {
+            // AppLogger 首次使用时把根 logger 设为 ALL，之后再降级，避免每批日志影响计时
+            AppLogger.getLogger(SyncLoadBenchmark.class);
+            Logger.getLogger("cn.keevol.keenotes").setLevel(Level.WARNING);
+        }
+        System.out.println("=== Sync load benchmark ===");
+        System.out.println("user.home=" + home + " lazyDecrypt=" + lazy + " batchSize=" + batchSize
+                + " heapMax=" + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "MB");
+
+        try (LocalSyncServer server = new LocalSyncServer(TOKEN, batchSize)) {
+            int port = server.start(0);
+
+            SettingsService settings = SettingsService.getInstance();
+            settings.setEndpointUrl("http://127.0.0.1:" + port);
+            settings.setToken(TOKEN);
+            settings.setEncryptionPassword(PASSWORD);
+            settings.setEncryptionFormatV3Enabled(true);
+            settings.setLazyDecryptionEnabled(lazy);
+            settings.save();
+
+            LocalCacheService cache = LocalCacheService.getInstance();
+            cache.initialize();
+            CryptoService crypto = new CryptoService();
+
+            for (int count : counts) {
+                server.clear();
+                server.addNotes(generateEncrypted(crypto, count));
+                cache.clearAllData();
+                runSync(server, cache, crypto, count, reconcile);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void runSync(LocalSyncServer server, LocalCacheService cache, CryptoService crypto, int count,
+                                boolean reconcile)
+            throws Exception {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        server.resetCounters();
+
+        WebSocketClientService ws = new WebSocketClientService();
+        CountDownLatch done = new CountDownLatch(1);
+        ws.addListener(new WebSocketClientService.SyncListener() {
+            @Override
+            public void onConnectionStatus(boolean connected) {
+            }
+
+            @Override
+            public void onSyncProgress(int current, int total) {
+            }
+
+            @Override
+            public void onSyncComplete(int total, long lastSyncId) {
+                done.countDown();
+            }
+
+            @Override
+            public void onRealtimeUpdate(long id, String content) {
+            }
+
+            @Override
+            public void onError(String message) {
+                System.out.println("  error: " + message);
+            }
+        });
+
+        long start = System.nanoTime();
+        ws.connect();
+        if (!done.await(SYNC_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Sync of " + count + " notes did not complete");
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        int cached = cache.getLocalNoteCount();
+        double seconds = wallNanos / 1e9;
+
+        System.out.println();
+        System.out.printf("--- %,d notes ---%n", count);
+        System.out.printf("wall=%.2fs notesPerSec=%,.0f peakHeap=%dMB cached=%d%s%n",
+                seconds, count / seconds, peakHeap / (1024 * 1024), cached,
+                cached == count ? "" : " (MISMATCH)");
+        System.out.printf("server: bytesSent=%,d flowControlPauses=%d%n", server.bytesSent(), server.flowControlPauses());
+        System.out.println(ws.getSyncQueueSummary());
+        System.out.println(ws.getSyncMetrics());
+
+        if (reconcile) {
+            runReconcile(server, cache, ws, crypto, count);
+        }
+        ws.shutdown();
+    }
+
+    /**
+     * 删除部分本地行、在服务器端改写部分笔记（模拟另一台设备），对账后逐桶比对，并与全量同步的字节数对比
+     */
+    private static void runReconcile(LocalSyncServer server, LocalCacheService cache, WebSocketClientService ws,
+                                     CryptoService crypto, int count) throws Exception {
+        long fullSyncBytes = server.bytesSent();
+        Random random = new Random(7);
+        int damaged = Math.max(1, count / 10_000);
+        for (int i = 0; i < damaged; i++) {
+            long id = 1 + random.nextInt(count);
+            cache.replaceRange(id, id + 1, new HashSet<>(), List.of());
+            server.replaceContent(1 + random.nextInt(count), crypto.encrypt("edited elsewhere #" + i));
+        }
+        server.resetCounters();
+
+        WebSocketClientService.ReconcileResult result = ws.reconcile().get(5, TimeUnit.MINUTES);
+        long upTo = server.lastId();
+        boolean consistent = cache.computeRangeHashes(SyncRangeHash.DEFAULT_BUCKET_SIZE, upTo)
+                .equals(server.rangeHashes(SyncRangeHash.DEFAULT_BUCKET_SIZE, upTo));
+        System.out.printf("reconcile: deleted=%d edited=%d %s consistent=%s (full sync sent %,d bytes)%n",
+                damaged, damaged, result, consistent, fullSyncBytes);
+    }
+
+    private static List<String> generateEncrypted(CryptoService crypto, int count) {
+        long start = System.nanoTime();
+        List<String> contents = IntStream.range(0, count).parallel()
+                .mapToObj(i -> {
+                    Random random = new Random(i);
+                    StringBuilder sb = new StringBuilder(CONTENT_CHARS);
+                    sb.append("bench note #").append(i).append(' ');
+                    while (sb.length() < CONTENT_CHARS) {
+                        sb.append((char) ('a' + random.nextInt(26)));
+                        if (random.nextInt(6) == 0) {
+                            sb.append(' ');
+                        }
+                    }
+                    try {
+                        return crypto.encrypt(sb.toString());
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+        System.out.printf("%nencrypted %,d notes in %dms%n", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return contents;
+    }
+}